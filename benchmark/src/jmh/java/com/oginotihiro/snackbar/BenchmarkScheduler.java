@@ -0,0 +1,61 @@
+package com.oginotihiro.snackbar;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Stand-in for the main looper: a virtual clock that only moves with {@link #advance}, and the
+ * due time of each posted task.
+ * <p>
+ * A task is kept once, posting it again moves its due time. The manager always cancels a
+ * timeout before posting it again, so this doesn't change what it sees, and keeps the
+ * scheduler's own cost flat whatever the number of records.
+ */
+final class BenchmarkScheduler implements SnackbarScheduler {
+    private final IdentityHashMap<Runnable, Long> mDue = new IdentityHashMap<>();
+    private final ArrayList<Runnable> mExpired = new ArrayList<>();
+    private long mNow;
+
+    @Override
+    public synchronized long now() {
+        return mNow;
+    }
+
+    @Override
+    public synchronized void postDelayed(Runnable task, long delayMs) {
+        mDue.put(task, mNow + delayMs);
+    }
+
+    @Override
+    public synchronized void cancel(Runnable task) {
+        mDue.remove(task);
+    }
+
+    /**
+     * Move the clock forward and run the tasks which became due, outside of the lock.
+     */
+    void advance(long ms) {
+        synchronized (this) {
+            mNow += ms;
+            final Iterator<Map.Entry<Runnable, Long>> it = mDue.entrySet().iterator();
+            while (it.hasNext()) {
+                final Map.Entry<Runnable, Long> entry = it.next();
+                if (entry.getValue() <= mNow) {
+                    mExpired.add(entry.getKey());
+                    it.remove();
+                }
+            }
+        }
+        // Only the thread driving the clock gets here
+        for (int i = 0; i < mExpired.size(); i++) {
+            mExpired.get(i).run();
+        }
+        mExpired.clear();
+    }
+
+    synchronized int size() {
+        return mDue.size();
+    }
+}
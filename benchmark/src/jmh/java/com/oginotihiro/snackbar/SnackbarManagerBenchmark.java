@@ -0,0 +1,107 @@
+package com.oginotihiro.snackbar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of show, dismiss and isShown on one {@link SnackbarManager} shared by 1, 4 and
+ * 16 threads, each playing the part of its own Snackbar.
+ * <p>
+ * The benchmarks are declared once here and run by one subclass per thread count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public abstract class SnackbarManagerBenchmark {
+    @Param({"1", "3"})
+    public int maxVisible;
+
+    SnackbarManager manager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        manager = new SnackbarManager(null, new BenchmarkScheduler());
+        manager.setMaxVisible(maxVisible);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final BenchmarkCallback callback = new BenchmarkCallback();
+    }
+
+    /**
+     * A manager with one Snackbar on screen, for the lock-free queries.
+     */
+    @State(Scope.Benchmark)
+    public static class ShownState {
+        final SnackbarManager manager = new SnackbarManager(null, new BenchmarkScheduler());
+        final BenchmarkCallback shown = new BenchmarkCallback();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            manager.show(Snackbar.LENGTH_INDEFINITE, shown);
+            manager.onShown(shown);
+        }
+    }
+
+    static class BenchmarkCallback extends SnackbarManager.Callback {
+        int shows;
+
+        @Override
+        void show() {
+            shows++;
+        }
+
+        @Override
+        void dismiss(int event) {
+        }
+
+        @Override
+        void coalesce(int count) {
+        }
+    }
+
+    /**
+     * A full round trip: queued or shown, dismissed, and its slot freed.
+     */
+    @Benchmark
+    public int showDismiss(ThreadState state) {
+        final BenchmarkCallback callback = state.callback;
+        manager.show(Snackbar.LENGTH_SHORT, callback);
+        manager.dismiss(callback, Snackbar.Callback.DISMISS_EVENT_MANUAL);
+        manager.onDismissed(callback);
+        return callback.shows;
+    }
+
+    @Benchmark
+    public boolean isShown(ShownState state) {
+        return state.manager.isCurrent(state.shown);
+    }
+
+    @Benchmark
+    public boolean isShownOrQueued(ShownState state) {
+        return state.manager.isCurrentOrNext(state.shown);
+    }
+
+    @Threads(1)
+    public static class Threads1 extends SnackbarManagerBenchmark {
+    }
+
+    @Threads(4)
+    public static class Threads4 extends SnackbarManagerBenchmark {
+    }
+
+    @Threads(16)
+    public static class Threads16 extends SnackbarManagerBenchmark {
+    }
+}
@@ -0,0 +1,85 @@
+package com.oginotihiro.snackbar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of queue operations in a {@link SnackbarManager} which already holds {@code depth}
+ * Snackbars waiting behind the shown one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SnackbarQueueBenchmark {
+    private static final int[] PRIORITIES = {
+            Snackbar.PRIORITY_LOW, Snackbar.PRIORITY_NORMAL, Snackbar.PRIORITY_HIGH
+    };
+
+    @Param({"1", "16", "256", "4096"})
+    public int depth;
+
+    private SnackbarManager mManager;
+    private SnackbarManagerBenchmark.BenchmarkCallback[] mQueued;
+    private SnackbarManagerBenchmark.BenchmarkCallback mCallback;
+    private int mNext;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mManager = new SnackbarManager(null, new BenchmarkScheduler());
+        // Room for the queued ones and the one being measured
+        mManager.setQueueCapacity(depth + 1, Snackbar.OVERFLOW_DROP_OLDEST);
+
+        // Holds the only slot, so everything else waits in line
+        SnackbarManagerBenchmark.BenchmarkCallback shown =
+                new SnackbarManagerBenchmark.BenchmarkCallback();
+        mManager.show(Snackbar.LENGTH_INDEFINITE, shown);
+
+        mQueued = new SnackbarManagerBenchmark.BenchmarkCallback[depth];
+        for (int i = 0; i < depth; i++) {
+            mQueued[i] = new SnackbarManagerBenchmark.BenchmarkCallback();
+            mManager.show(Snackbar.LENGTH_SHORT, Snackbar.PRIORITY_NORMAL, null, null, mQueued[i]);
+        }
+        mCallback = new SnackbarManagerBenchmark.BenchmarkCallback();
+    }
+
+    /**
+     * Queue a Snackbar of a rotating priority and take it out again.
+     */
+    @Benchmark
+    public int offerRemove() {
+        final int priority = PRIORITIES[mNext++ % PRIORITIES.length];
+        mManager.show(Snackbar.LENGTH_SHORT, priority, null, null, mCallback);
+        mManager.dismiss(mCallback, Snackbar.Callback.DISMISS_EVENT_MANUAL);
+        return mManager.getQueueSize();
+    }
+
+    /**
+     * Show an already queued Snackbar again with another priority, moving it in the heap.
+     */
+    @Benchmark
+    public int updatePriority() {
+        final int i = mNext++;
+        final SnackbarManagerBenchmark.BenchmarkCallback callback = mQueued[i % depth];
+        mManager.show(Snackbar.LENGTH_SHORT, PRIORITIES[i % PRIORITIES.length], null, null,
+                callback);
+        return mManager.getQueueSize();
+    }
+
+    /**
+     * Coalesce into a queued Snackbar, found by key.
+     */
+    @Benchmark
+    public int coalesce() {
+        mManager.show(Snackbar.LENGTH_SHORT, Snackbar.PRIORITY_NORMAL, "key", null, mCallback);
+        return mManager.getQueueSize();
+    }
+}
@@ -0,0 +1,81 @@
+package com.oginotihiro.snackbar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of scheduling, moving and firing Snackbar timeouts, the clock being driven by hand.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SnackbarTimeoutBenchmark {
+    private static final int SHORT_DURATION_MS = 1500;
+
+    private BenchmarkScheduler mScheduler;
+    private SnackbarManager mManager;
+    private SnackbarManagerBenchmark.BenchmarkCallback mShown;
+    // Separate, so the clock moved by showUntilTimeout() doesn't expire mShown
+    private BenchmarkScheduler mExpiringScheduler;
+    private SnackbarManager mExpiringManager;
+    private SnackbarManagerBenchmark.BenchmarkCallback mCallback;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mScheduler = new BenchmarkScheduler();
+        mManager = new SnackbarManager(null, mScheduler);
+
+        // Stays on screen, its timeout is rescheduled over and over
+        mShown = new SnackbarManagerBenchmark.BenchmarkCallback();
+        mManager.show(Snackbar.LENGTH_LONG, mShown);
+        mManager.onShown(mShown);
+
+        mExpiringScheduler = new BenchmarkScheduler();
+        mExpiringManager = new SnackbarManager(null, mExpiringScheduler);
+        mCallback = new SnackbarManagerBenchmark.BenchmarkCallback() {
+            @Override
+            void dismiss(int event) {
+                // No exit animation, the Snackbar is gone at once
+                mExpiringManager.onDismissed(this);
+            }
+        };
+    }
+
+    /**
+     * What a touch on the Snackbar does: hold the timeout, then restart it.
+     */
+    @Benchmark
+    public int cancelRestore() {
+        mManager.cancelTimeout(mShown);
+        mManager.restoreTimeout(mShown);
+        return mScheduler.size();
+    }
+
+    /**
+     * Show the same Snackbar again while it's shown, which reschedules its timeout.
+     */
+    @Benchmark
+    public int reschedule() {
+        mManager.show(Snackbar.LENGTH_LONG, mShown);
+        return mScheduler.size();
+    }
+
+    /**
+     * A Snackbar shown, timed out and gone.
+     */
+    @Benchmark
+    public int showUntilTimeout() {
+        mExpiringManager.show(Snackbar.LENGTH_SHORT, mCallback);
+        mExpiringManager.onShown(mCallback);
+        mExpiringScheduler.advance(SHORT_DURATION_MS);
+        return mCallback.shows;
+    }
+}
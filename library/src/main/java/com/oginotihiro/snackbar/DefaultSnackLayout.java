@@ -2,6 +2,7 @@ package com.oginotihiro.snackbar;
 
 import android.content.Context;
 import android.support.v4.view.ViewCompat;
+import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.widget.Button;
 import android.widget.TextView;
@@ -12,9 +13,10 @@ import android.widget.TextView;
  * 描述：
  */
 
-public class DefaultSnackLayout extends Snackbar.SnackbarLayoutBase {
+public class DefaultSnackLayout extends Snackbar.SnackbarLayoutBase implements SnackbarTextLayout {
     private TextView tvText;
     private Button btAction;
+    private CharSequence mText;
 
     public DefaultSnackLayout(Context context, int gravity) {
         this(context, null, gravity);
@@ -25,12 +27,52 @@ public class DefaultSnackLayout extends Snackbar.SnackbarLayoutBase {
         LayoutParams lp = new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT);
         lp.gravity = gravity;
         setLayoutParams(lp);
-        inflate(context, R.layout.snackbar_default, this);
+        SnackbarTrace.beginSection(SnackbarTrace.INFLATE);
+        try {
+            inflate(context, R.layout.snackbar_default, this);
+        } finally {
+            SnackbarTrace.endSection();
+        }
         tvText = (TextView) findViewById(R.id.snackbar_text);
         btAction = (Button) findViewById(R.id.snackbar_action);
     }
 
 
+    @Override
+    public void setText(CharSequence text) {
+        mText = text;
+        tvText.setText(text);
+    }
+
+    @Override
+    public void setAction(CharSequence action, OnClickListener listener) {
+        if (!TextUtils.isEmpty(action)) {
+            btAction.setVisibility(VISIBLE);
+            if (!TextUtils.equals(action, btAction.getText())) {
+                btAction.setText(action);
+            }
+            btAction.setOnClickListener(listener);
+        } else {
+            btAction.setVisibility(GONE);
+            btAction.setOnClickListener(null);
+        }
+    }
+
+    @Override
+    protected void onCoalesced(int count) {
+        tvText.setText(count > 1 ? mText + " \u00d7" + count : mText);
+    }
+
+    @Override
+    protected void onRecycled() {
+        setText(null);
+        btAction.setText(null);
+        btAction.setOnClickListener(null);
+        btAction.setVisibility(GONE);
+        ViewCompat.setAlpha(tvText, 1f);
+        ViewCompat.setAlpha(btAction, 1f);
+    }
+
     public TextView getTvText() {
         return tvText;
     }
@@ -0,0 +1,432 @@
+package com.oginotihiro.snackbar;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.support.v4.view.AccessibilityDelegateCompat;
+import android.support.v4.view.ViewCompat;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat.AccessibilityActionCompat;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
+import android.view.View;
+import android.view.accessibility.AccessibilityEvent;
+
+/**
+ * A default layout drawing its text and action itself, as a single view.
+ * <p>
+ * Looks like {@link DefaultSnackLayout}, without its linear layout, text view and button: it is
+ * measured in a single pass, the text is laid out once per width, or taken from the layouts
+ * made ahead of time by {@link Snackbar#setPremeasureText(boolean)}, and the content fades in
+ * and out with one animation frame callback. The action has no ripple, only a pressed highlight,
+ * and its click listener receives this view. It isn't focusable on its own: accessibility
+ * services read the text from this view and run the action as one of its actions.
+ *
+ * @see Snackbar#setFlatLayout(boolean)
+ */
+public class FlatSnackLayout extends Snackbar.SnackbarLayoutBase implements SnackbarTextLayout {
+    private static final int BACKGROUND_COLOR = 0xff151515;
+    private static final int TEXT_COLOR = Color.WHITE;
+    private static final int PRESSED_COLOR = 0x33ffffff;
+    private static final int TEXT_SIZE_SP = 16;
+    private static final int ACTION_TEXT_SIZE_SP = 14;
+    private static final int TEXT_PADDING_HORIZONTAL_DP = 12;
+    private static final int TEXT_PADDING_VERTICAL_DP = 16;
+    private static final int ACTION_PADDING_DP = 12;
+    private static final int ACTION_MARGIN_DP = 8;
+    private static final int ACTION_MIN_SIZE_DP = 48;
+
+    private final TextPaint mTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final TextPaint mActionPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mPressedPaint = new Paint();
+    private final int mActionColor;
+    private final int mTextPaddingHorizontal;
+    private final int mTextPaddingVertical;
+    private final int mActionPadding;
+    private final int mActionMargin;
+    private final int mActionMinSize;
+
+    private CharSequence mText;
+    // The text drawn, with the coalesced count
+    private CharSequence mDisplayText;
+    private Layout mTextLayout;
+    private int mTextWidth = -1;
+    private int mTextLeft;
+    private int mTextTop;
+    private String mAction;
+    private OnClickListener mActionListener;
+    private int mActionWidth;
+    private float mActionTextWidth;
+    private final Rect mActionRect = new Rect();
+    private boolean mActionPressed;
+
+    // Fade of the content, run by animateChildrenIn() and animateChildrenOut()
+    private float mContentAlpha = 1f;
+    private float mFadeFrom;
+    private float mFadeTo;
+    private long mFadeStartTime;
+    private int mFadeDuration;
+    private boolean mFading;
+    private final Runnable mFadeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            final long elapsed = SystemClock.uptimeMillis() - mFadeStartTime;
+            if (elapsed < 0) {
+                // Still delayed
+                ViewCompat.postOnAnimation(FlatSnackLayout.this, this);
+                return;
+            }
+            final float fraction = mFadeDuration > 0 ? Math.min(1f, elapsed / (float) mFadeDuration) : 1f;
+            mContentAlpha = mFadeFrom + (mFadeTo - mFadeFrom)
+                    * SnackbarAnimators.FAST_OUT_SLOW_IN.getInterpolation(fraction);
+            invalidate();
+            if (fraction < 1f) {
+                ViewCompat.postOnAnimation(FlatSnackLayout.this, this);
+            } else {
+                mFading = false;
+            }
+        }
+    };
+
+    // The text read out, and the action run as a custom action or a click of the whole view
+    private final AccessibilityDelegateCompat mAccessibilityDelegate = new AccessibilityDelegateCompat() {
+        @Override
+        public void onInitializeAccessibilityNodeInfo(View host, AccessibilityNodeInfoCompat info) {
+            super.onInitializeAccessibilityNodeInfo(host, info);
+            info.setText(mDisplayText);
+            if (mAction != null && mActionListener != null) {
+                info.addAction(new AccessibilityActionCompat(R.id.snackbar_action, mAction));
+                info.addAction(new AccessibilityActionCompat(AccessibilityNodeInfoCompat.ACTION_CLICK, mAction));
+                info.setClickable(true);
+            }
+        }
+
+        @Override
+        public boolean performAccessibilityAction(View host, int action, Bundle args) {
+            if ((action == R.id.snackbar_action || action == AccessibilityNodeInfoCompat.ACTION_CLICK)
+                    && mAction != null && mActionListener != null) {
+                mActionListener.onClick(FlatSnackLayout.this);
+                return true;
+            }
+            return super.performAccessibilityAction(host, action, args);
+        }
+    };
+
+    public FlatSnackLayout(Context context, int gravity) {
+        this(context, null, gravity);
+    }
+
+    public FlatSnackLayout(Context context, AttributeSet attrs, int gravity) {
+        super(context, attrs);
+        LayoutParams lp = new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT);
+        lp.gravity = gravity;
+        setLayoutParams(lp);
+        setWillNotDraw(false);
+        setBackgroundColor(BACKGROUND_COLOR);
+
+        mTextPaddingHorizontal = dp(TEXT_PADDING_HORIZONTAL_DP);
+        mTextPaddingVertical = dp(TEXT_PADDING_VERTICAL_DP);
+        mActionPadding = dp(ACTION_PADDING_DP);
+        mActionMargin = dp(ACTION_MARGIN_DP);
+        mActionMinSize = dp(ACTION_MIN_SIZE_DP);
+
+        mTextPaint.setColor(TEXT_COLOR);
+        mTextPaint.setTextSize(sp(TEXT_SIZE_SP));
+        final TypedArray a = context.obtainStyledAttributes(new int[]{R.attr.colorAccent});
+        mActionColor = a.getColor(0, TEXT_COLOR);
+        a.recycle();
+        mActionPaint.setColor(mActionColor);
+        mActionPaint.setTextSize(sp(ACTION_TEXT_SIZE_SP));
+        // The typeface of a button
+        mActionPaint.setTypeface(Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+                ? Typeface.create("sans-serif-medium", Typeface.NORMAL) : Typeface.DEFAULT_BOLD);
+        mPressedPaint.setColor(PRESSED_COLOR);
+        ViewCompat.setAccessibilityDelegate(this, mAccessibilityDelegate);
+        if (ViewCompat.getImportantForAccessibility(this) == ViewCompat.IMPORTANT_FOR_ACCESSIBILITY_AUTO) {
+            ViewCompat.setImportantForAccessibility(this, ViewCompat.IMPORTANT_FOR_ACCESSIBILITY_YES);
+        }
+
+        SnackbarTextMeasurer.getInstance().setTemplate(FlatSnackLayout.class, mTextPaint,
+                mTextPaddingHorizontal * 2, mActionPaint, mActionPadding * 2, mActionMinSize,
+                mActionMargin, getResources().getConfiguration().locale);
+    }
+
+    private int dp(int dp) {
+        return Math.round(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, dp,
+                getResources().getDisplayMetrics()));
+    }
+
+    private float sp(int sp) {
+        return TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, sp,
+                getResources().getDisplayMetrics());
+    }
+
+    @Override
+    public void setText(CharSequence text) {
+        mText = text;
+        setDisplayText(text);
+    }
+
+    private void setDisplayText(CharSequence text) {
+        mDisplayText = text;
+        if (mTextWidth > 0 && mTextLayout != null) {
+            // Same width, only laid out again if the height changes
+            final int height = mTextLayout.getHeight();
+            mTextLayout = makeTextLayout(mTextWidth);
+            if (mTextLayout.getHeight() == height) {
+                invalidate();
+                return;
+            }
+        } else {
+            mTextLayout = null;
+        }
+        requestLayout();
+        invalidate();
+    }
+
+    @Override
+    public void setAction(CharSequence action, OnClickListener listener) {
+        final String text = TextUtils.isEmpty(action) ? null
+                : action.toString().toUpperCase(getResources().getConfiguration().locale);
+        mActionListener = listener;
+        if (TextUtils.equals(text, mAction)) {
+            return;
+        }
+        mAction = text;
+        if (text != null) {
+            mActionTextWidth = mActionPaint.measureText(text);
+            mActionWidth = Math.max(mActionMinSize, (int) Math.ceil(mActionTextWidth) + mActionPadding * 2);
+        } else {
+            mActionTextWidth = 0;
+            mActionWidth = 0;
+        }
+        setActionPressed(false);
+        // The text gets narrower or wider
+        mTextLayout = null;
+        requestLayout();
+        invalidate();
+    }
+
+    @Override
+    protected void onCoalesced(int count) {
+        setDisplayText(count > 1 ? mText + " \u00d7" + count : mText);
+    }
+
+    @Override
+    protected void onRecycled() {
+        setText(null);
+        setAction(null, null);
+        stopFade(1f);
+    }
+
+    private int actionSpace() {
+        return mAction != null ? mActionWidth + mActionMargin : 0;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        // No children, everything is known from the text and the action
+        final int horizontalPadding = getPaddingLeft() + getPaddingRight() + mTextPaddingHorizontal * 2
+                + actionSpace();
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        if (MeasureSpec.getMode(widthMeasureSpec) != MeasureSpec.EXACTLY) {
+            final int desired = horizontalPadding + (mDisplayText != null
+                    ? (int) Math.ceil(Layout.getDesiredWidth(mDisplayText, mTextPaint)) : 0);
+            width = MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.AT_MOST
+                    ? Math.min(width, desired) : desired;
+        }
+        final int textWidth = Math.max(0, width - horizontalPadding);
+        if (mTextLayout == null || mTextWidth != textWidth) {
+            mTextWidth = textWidth;
+            mTextLayout = textWidth > 0 ? makeTextLayout(textWidth) : null;
+        }
+        final int textHeight = mTextLayout != null ? mTextLayout.getHeight() : 0;
+        int height = Math.max(textHeight + mTextPaddingVertical * 2, mAction != null ? mActionMinSize : 0);
+        height = Math.max(height + getPaddingTop() + getPaddingBottom(), getSuggestedMinimumHeight());
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+    }
+
+    private Layout makeTextLayout(int width) {
+        final CharSequence text = mDisplayText != null ? mDisplayText : "";
+        if (text instanceof String) {
+            // Laid out ahead of time, if the text was premeasured at this width
+            final Layout premeasured = SnackbarTextMeasurer.getInstance()
+                    .get(FlatSnackLayout.class, (String) text, width);
+            if (premeasured != null) {
+                return premeasured;
+            }
+        }
+        return new StaticLayout(text, mTextPaint, width, Layout.Alignment.ALIGN_NORMAL, 1f, 0f, true);
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        positionContent(right - left, bottom - top);
+        super.onLayout(changed, left, top, right, bottom);
+    }
+
+    private void positionContent(int width, int height) {
+        final boolean rtl = ViewCompat.getLayoutDirection(this) == ViewCompat.LAYOUT_DIRECTION_RTL;
+        final int contentTop = getPaddingTop();
+        final int contentHeight = height - getPaddingTop() - getPaddingBottom();
+        final int textHeight = mTextLayout != null ? mTextLayout.getHeight() : 0;
+        mTextLeft = getPaddingLeft() + mTextPaddingHorizontal + (rtl ? actionSpace() : 0);
+        mTextTop = contentTop + (contentHeight - textHeight) / 2;
+        if (mAction != null) {
+            final int actionLeft = rtl ? getPaddingLeft() + mActionMargin
+                    : width - getPaddingRight() - mActionMargin - mActionWidth;
+            final int actionHeight = Math.min(mActionMinSize, contentHeight);
+            final int actionTop = contentTop + (contentHeight - actionHeight) / 2;
+            mActionRect.set(actionLeft, actionTop, actionLeft + mActionWidth, actionTop + actionHeight);
+        } else {
+            mActionRect.setEmpty();
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (mTextLayout != null) {
+            final int alpha = Math.round(Color.alpha(TEXT_COLOR) * mContentAlpha);
+            canvas.save();
+            canvas.translate(mTextLeft, mTextTop);
+            if (mTextLayout.getPaint() == mTextPaint) {
+                mTextPaint.setAlpha(alpha);
+                mTextLayout.draw(canvas);
+            } else if (alpha < Color.alpha(TEXT_COLOR)) {
+                // From the measurer, shared with the next Snackbars: faded in a layer, not its paint
+                canvas.saveLayerAlpha(0, 0, mTextLayout.getWidth(), mTextLayout.getHeight(),
+                        Math.round(255 * mContentAlpha), Canvas.ALL_SAVE_FLAG);
+                mTextLayout.draw(canvas);
+                canvas.restore();
+            } else {
+                mTextLayout.draw(canvas);
+            }
+            canvas.restore();
+        }
+        if (mAction != null) {
+            if (mActionPressed) {
+                canvas.drawRect(mActionRect, mPressedPaint);
+            }
+            mActionPaint.setColor(mActionColor);
+            mActionPaint.setAlpha(Math.round(Color.alpha(mActionColor) * mContentAlpha));
+            final float x = mActionRect.left + (mActionRect.width() - mActionTextWidth) / 2;
+            final float baseline = mActionRect.exactCenterY()
+                    - (mActionPaint.descent() + mActionPaint.ascent()) / 2;
+            canvas.drawText(mAction, x, baseline, mActionPaint);
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (mAction == null || mActionListener == null) {
+            return super.onTouchEvent(event);
+        }
+        // Hit-testing the action, the rest of the bar lets touches through as before
+        final boolean inAction = mActionRect.contains((int) event.getX(), (int) event.getY());
+        switch (event.getAction() & MotionEvent.ACTION_MASK) {
+            case MotionEvent.ACTION_DOWN:
+                if (!inAction) {
+                    return super.onTouchEvent(event);
+                }
+                setActionPressed(true);
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                if (!inAction) {
+                    setActionPressed(false);
+                }
+                return true;
+            case MotionEvent.ACTION_UP:
+                if (mActionPressed) {
+                    setActionPressed(false);
+                    playSoundEffect(SoundEffectConstants.CLICK);
+                    mActionListener.onClick(this);
+                }
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                setActionPressed(false);
+                return true;
+            default:
+                return super.onTouchEvent(event);
+        }
+    }
+
+    private void setActionPressed(boolean pressed) {
+        if (mActionPressed != pressed) {
+            mActionPressed = pressed;
+            invalidate(mActionRect);
+        }
+    }
+
+    @Override
+    public void onPopulateAccessibilityEvent(AccessibilityEvent event) {
+        super.onPopulateAccessibilityEvent(event);
+        if (!TextUtils.isEmpty(mDisplayText)) {
+            event.getText().add(mDisplayText);
+        }
+    }
+
+    /**
+     * Returns the text as drawn, with the coalesced count if shown.
+     */
+    public CharSequence getText() {
+        return mDisplayText;
+    }
+
+    /**
+     * Returns the action as drawn, or {@code null} if there's none.
+     */
+    public String getAction() {
+        return mAction;
+    }
+
+    @Override
+    protected void animateChildrenIn(int delay, int duration) {
+        startFade(0f, 1f, delay, duration);
+    }
+
+    @Override
+    protected void animateChildrenOut(int delay, int duration) {
+        startFade(1f, 0f, delay, duration);
+    }
+
+    private void startFade(float from, float to, int delay, int duration) {
+        mContentAlpha = from;
+        mFadeFrom = from;
+        mFadeTo = to;
+        mFadeStartTime = SystemClock.uptimeMillis() + delay;
+        mFadeDuration = duration;
+        invalidate();
+        if (!mFading) {
+            mFading = true;
+            ViewCompat.postOnAnimation(this, mFadeRunnable);
+        }
+    }
+
+    private void stopFade(float alpha) {
+        removeCallbacks(mFadeRunnable);
+        mFading = false;
+        mContentAlpha = alpha;
+        invalidate();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        // Callbacks posted while detached wait for the next attach, the fade is done by then
+        stopFade(1f);
+        super.onDetachedFromWindow();
+    }
+}
@@ -0,0 +1,52 @@
+package com.oginotihiro.snackbar;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.os.SystemClock;
+
+/**
+ * The default {@link SnackbarScheduler}: delays are measured on
+ * {@link SystemClock#uptimeMillis()} by the main looper, and expired tasks run with the view
+ * work of the next frame through the {@link SnackbarDispatcher}.
+ */
+public final class MainLooperScheduler implements SnackbarScheduler {
+    private static final int MSG_RUN = 0;
+
+    private static class Holder {
+        static final MainLooperScheduler INSTANCE = new MainLooperScheduler();
+    }
+
+    public static MainLooperScheduler getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper(), new Handler.Callback() {
+        @Override
+        public boolean handleMessage(Message message) {
+            if (message.what == MSG_RUN) {
+                SnackbarDispatcher.getInstance().post((Runnable) message.obj);
+                return true;
+            }
+            return false;
+        }
+    });
+
+    private MainLooperScheduler() {
+    }
+
+    @Override
+    public long now() {
+        return SystemClock.uptimeMillis();
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayMs) {
+        mHandler.sendMessageDelayed(Message.obtain(mHandler, MSG_RUN, task), delayMs);
+    }
+
+    @Override
+    public void cancel(Runnable task) {
+        mHandler.removeMessages(MSG_RUN, task);
+    }
+}
@@ -15,31 +15,32 @@
  */
 package com.oginotihiro.snackbar;
 
+import android.annotation.TargetApi;
+import android.app.Activity;
 import android.content.Context;
+import android.graphics.Rect;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
-import android.os.Message;
+import android.os.SystemClock;
 import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
 import android.support.annotation.StringRes;
+import android.support.v4.view.GravityCompat;
 import android.support.v4.view.ViewCompat;
-import android.support.v4.view.ViewPropertyAnimatorCompat;
-import android.support.v4.view.ViewPropertyAnimatorListenerAdapter;
-import android.support.v4.view.animation.FastOutSlowInInterpolator;
 import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.view.Gravity;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewParent;
-import android.view.animation.Animation;
-import android.view.animation.AnimationUtils;
-import android.widget.Button;
 import android.widget.FrameLayout;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public final class Snackbar {
     /**
@@ -140,55 +141,218 @@ public final class Snackbar {
      */
     public static final int LENGTH_LONG = 0;
 
-    private static final int ANIMATION_DURATION = 350;
-    private static final int ANIMATION_FADE_DURATION = 240;
+    /**
+     * Priority for Snackbars which may wait behind others.
+     *
+     * @see #show(int)
+     */
+    public static final int PRIORITY_LOW = -1;
+    /**
+     * Default priority used by {@link #show()}.
+     */
+    public static final int PRIORITY_NORMAL = 0;
+    /**
+     * Priority for Snackbars which should be shown before any other queued one.
+     */
+    public static final int PRIORITY_HIGH = 1;
 
-    private static final Handler sHandler;
-    private static final int MSG_SHOW = 0;
-    private static final int MSG_DISMISS = 1;
+    /**
+     * @hide
+     */
+    @IntDef({OVERFLOW_DROP_OLDEST, OVERFLOW_DROP_NEWEST, OVERFLOW_REJECT_LOWEST_PRIORITY})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface OverflowPolicy {
+    }
 
-    static {
-        sHandler = new Handler(Looper.getMainLooper(), new Handler.Callback() {
-            @Override
-            public boolean handleMessage(Message message) {
-                switch (message.what) {
-                    case MSG_SHOW:
-                        ((Snackbar) message.obj).showView();
-                        return true;
-                    case MSG_DISMISS:
-                        ((Snackbar) message.obj).hideView(message.arg1);
-                        return true;
-                }
-                return false;
-            }
-        });
+    /**
+     * When the queue is full, drop the Snackbar which has been waiting the longest.
+     *
+     * @see #setQueueCapacity(int, int)
+     */
+    public static final int OVERFLOW_DROP_OLDEST = 0;
+    /**
+     * When the queue is full, drop the Snackbar which was just shown.
+     *
+     * @see #setQueueCapacity(int, int)
+     */
+    public static final int OVERFLOW_DROP_NEWEST = 1;
+    /**
+     * When the queue is full, drop the queued Snackbar with the lowest priority, or the one which
+     * was just shown if it doesn't outrank it.
+     *
+     * @see #setQueueCapacity(int, int)
+     */
+    public static final int OVERFLOW_REJECT_LOWEST_PRIORITY = 2;
+
+    /**
+     * @hide
+     */
+    @IntDef({RATE_LIMIT_DROP, RATE_LIMIT_DELAY, RATE_LIMIT_COALESCE})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface RateLimitPolicy {
     }
 
+    /**
+     * Drop the Snackbars shown over the rate limit of their channel.
+     *
+     * @see #setChannelRateLimit(String, int, long, int)
+     */
+    public static final int RATE_LIMIT_DROP = 0;
+    /**
+     * Hold the Snackbars shown over the rate limit of their channel until the channel allows them.
+     * At most one window's worth of Snackbars is held, the others are dropped.
+     *
+     * @see #setChannelRateLimit(String, int, long, int)
+     */
+    public static final int RATE_LIMIT_DELAY = 1;
+    /**
+     * Merge the Snackbars shown over the rate limit of their channel into the latest shown or
+     * queued Snackbar of the channel, as with {@link #setCoalesceKey(Object)}: their
+     * {@link Callback} is told they were dismissed. They are dropped if there is none.
+     *
+     * @see #setChannelRateLimit(String, int, long, int)
+     */
+    public static final int RATE_LIMIT_COALESCE = 2;
+
+    /**
+     * Scope standing for the parent the Snackbar is shown in.
+     *
+     * @see #setScope(Object)
+     */
+    public static final Object SCOPE_CONTAINER = new Object();
+
+    private static volatile Object sDefaultScope;
+    private static volatile boolean sDefaultFlatLayout;
+
+    private static final int ANIMATION_DURATION = 350;
+    private static final int ANIMATION_FADE_DURATION = 240;
+
+    private static final Handler sHandler = new Handler(Looper.getMainLooper());
+    // Bounds of the view laid out ahead of its parent, main thread only
+    private static final Rect sContainerRect = new Rect();
+    private static final Rect sChildRect = new Rect();
+
+    // View work is batched per frame by the dispatcher
     private final SnackbarManager.Callback mManagerCallback = new SnackbarManager.Callback() {
         @Override
         public void show() {
-            sHandler.sendMessage(sHandler.obtainMessage(MSG_SHOW, Snackbar.this));
+            SnackbarDispatcher.getInstance().post(SnackbarDispatcher.CMD_SHOW, Snackbar.this, 0);
         }
 
         @Override
         public void dismiss(int event) {
-            sHandler.sendMessage(sHandler.obtainMessage(MSG_DISMISS, event, 0, Snackbar.this));
+            SnackbarDispatcher.getInstance().post(SnackbarDispatcher.CMD_DISMISS, Snackbar.this, event);
+        }
+
+        @Override
+        public void coalesce(int count) {
+            SnackbarDispatcher.getInstance().post(SnackbarDispatcher.CMD_COALESCE, Snackbar.this, count);
         }
     };
 
-    private final Context mContext;
-    private final ViewGroup mTargetParent;
+    /**
+     * Stands for the default coalesce key, the text, direction and container of the Snackbar.
+     */
+    private static final Object DEFAULT_COALESCE_KEY = new Object();
+
+    private static final class DefaultCoalesceKey {
+        final ViewGroup container;
+        final int direction;
+        final String text;
+
+        DefaultCoalesceKey(ViewGroup container, int direction, String text) {
+            this.container = container;
+            this.direction = direction;
+            this.text = text;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof DefaultCoalesceKey)) {
+                return false;
+            }
+            final DefaultCoalesceKey other = (DefaultCoalesceKey) o;
+            return container == other.container && direction == other.direction
+                    && text.equals(other.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(container) + direction) + text.hashCode();
+        }
+    }
+
+    // Dropped by release()
+    private Context mContext;
+    private ViewGroup mTargetParent;
     private SnackbarLayoutBase mView;
+    // Content of the default layout, kept so it can be inflated lazily
+    private String mText;
+    private String mActionText;
+    private View.OnClickListener mActionListener;
+    private final View.OnClickListener mActionClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            if (mActionListener != null) {
+                mActionListener.onClick(v);
+            }
+            dispatchDismiss(Callback.DISMISS_EVENT_ACTION);
+        }
+    };
+    // Content changed through updateText() and updateAction(), applied on the next frame
+    private static final int UPDATE_TEXT = 1;
+    private static final int UPDATE_ACTION = 1 << 1;
+    private final Object mUpdateLock = new Object();
+    private final AtomicBoolean mUpdateScheduled = new AtomicBoolean();
+    private int mPendingFlags;
+    private String mPendingText;
+    private String mPendingActionText;
+    private View.OnClickListener mPendingActionListener;
+    private Object mCoalesceKey;
+    private DefaultCoalesceKey mDefaultCoalesceKey;
+    private String mChannel;
+    private SnackbarManager mManager;
+    private SnackbarStack mStack;
+    private boolean mShowCoalescedCount;
+    private boolean mDefaultLayout;
+    private boolean mFlatLayout;
+    private boolean mRecycleContentView;
+    private boolean mPremeasureText;
+    private boolean mLayoutBeforeShow;
+    private int mCoalescedCount = 1;
     private int mDirection;
     private int mDuration;
     private int mAnimDuration;
     private int mAnimFadeDuration;
     private Callback mCallback;
+    private final ViewListener mViewListener = new ViewListener();
+    private int mHideEvent;
+    private SnackbarAnimator mAnimator;
+    private boolean mHandOff;
+    // Timestamps for the SnackbarMetricsListener, 0 when not reached yet
+    private volatile long mShowTime;
+    private long mViewAddedTime;
+    private long mEntryStartTime;
+    private long mEnteredTime;
+    private long mExitStartTime;
+    // Window of the SnackbarFrameMonitor measuring the running animation, -1 if none
+    private long mFrameWindow = -1;
+    private boolean mFrameWindowEntering;
+    private int mLayoutTraceCookie;
+    private boolean mAdopted;
+    private boolean mReleased;
+    private final Runnable mHandOffRunnable = new Runnable() {
+        @Override
+        public void run() {
+            handOffView();
+        }
+    };
 
     private Snackbar(ViewGroup parent, SnackbarLayoutBase layout) {
         mContext = parent.getContext();
         mTargetParent = parent;
         mView = layout;
+        setScope(sDefaultScope);
     }
 
     public static Snackbar make(@NonNull View view, @StringRes int strId, @Duration int duration) {
@@ -204,18 +368,51 @@ public final class Snackbar {
         return make(view, view.getResources().getString(strId), direction, duration);
     }
 
+    /**
+     * Make a Snackbar with the default layout. The layout is only inflated when the Snackbar is
+     * about to be shown, so a Snackbar coalesced into an identical one never inflates it.
+     *
+     * @see #setCoalesceKey(Object)
+     */
     public static Snackbar make(@NonNull View view, @NonNull String text, @Direction int direction, @Duration int duration) {
-        int gravity = direction == Snackbar.TOP_BOTTOM ? Gravity.TOP : Gravity.BOTTOM;
-        DefaultSnackLayout defaultLayout = new DefaultSnackLayout(view.getContext(), gravity);
-        Snackbar snackbar = make(view, defaultLayout, direction, duration, ANIMATION_DURATION, ANIMATION_FADE_DURATION);
+        SnackbarTrace.beginSection(SnackbarTrace.MAKE);
+        try {
+            return makeIn(findSuitableParent(view), text, direction, duration);
+        } finally {
+            SnackbarTrace.endSection();
+        }
+    }
+
+    /**
+     * Make a Snackbar with the default layout, held by {@code container} without walking up
+     * the view tree.
+     *
+     * @param container The parent of the Snackbar's view, e.g. from {@link #findContainer(View)}.
+     * @see #make(View, String, int, int)
+     */
+    public static Snackbar makeIn(@NonNull ViewGroup container, @NonNull String text, @Direction int direction, @Duration int duration) {
+        Snackbar snackbar = new Snackbar(container, null);
+        snackbar.setDirection(direction);
+        snackbar.setDuration(duration);
+        snackbar.setAnimationDuration(ANIMATION_DURATION);
+        snackbar.setAnimationFadeDuration(ANIMATION_FADE_DURATION);
+        snackbar.mCoalesceKey = DEFAULT_COALESCE_KEY;
+        snackbar.mDefaultLayout = true;
+        snackbar.mFlatLayout = sDefaultFlatLayout;
         snackbar.setText(text);
         return snackbar;
     }
 
 
     public Snackbar setText(String text) {
-        DefaultSnackLayout defaultSnackLayout = (DefaultSnackLayout) mView;
-        defaultSnackLayout.getTvText().setText(text);
+        mText = text;
+        mDefaultCoalesceKey = null;
+        if (mPremeasureText) {
+            premeasureText(text);
+        }
+        if (mView != null) {
+            ((SnackbarTextLayout) mView).setText(text);
+        }
         return this;
     }
 
@@ -224,29 +421,364 @@ public final class Snackbar {
     }
 
     public Snackbar setAction(@NonNull String action, final View.OnClickListener clickListener) {
-        DefaultSnackLayout defaultSnackLayout = (DefaultSnackLayout) mView;
-        Button btAction = defaultSnackLayout.getBtAction();
-        if (!TextUtils.isEmpty(action)) {
-            btAction.setVisibility(View.VISIBLE);
-            btAction.setText(action);
-        } else {
-            btAction.setVisibility(View.GONE);
-            btAction.setOnClickListener(null);
+        mActionText = action;
+        mActionListener = clickListener;
+        if (mPremeasureText) {
+            // The text gets narrower
+            premeasureText(mText);
+        }
+        if (mView != null) {
+            bindAction((SnackbarTextLayout) mView);
+        }
+        return this;
+    }
+
+    /**
+     * Change the text of this Snackbar without showing it again, e.g. for progress messages.
+     * May be called from any thread and as often as needed: changes are applied at most once per
+     * frame, only the latest one is rendered, and the Snackbar is only laid out again if its size
+     * changes. The timeout is not restarted.
+     */
+    public void updateText(@NonNull String text) {
+        synchronized (mUpdateLock) {
+            mPendingText = text;
+            mPendingFlags |= UPDATE_TEXT;
+        }
+        if (mPremeasureText) {
+            premeasureText(text);
+        }
+        scheduleUpdate();
+    }
+
+    /**
+     * Change the action of this Snackbar without showing it again, like {@link #updateText}.
+     *
+     * @param action The text of the action, or {@code null} to remove it.
+     */
+    public void updateAction(String action, View.OnClickListener clickListener) {
+        synchronized (mUpdateLock) {
+            mPendingActionText = action;
+            mPendingActionListener = clickListener;
+            mPendingFlags |= UPDATE_ACTION;
+        }
+        scheduleUpdate();
+    }
+
+    private void scheduleUpdate() {
+        if (mUpdateScheduled.compareAndSet(false, true)) {
+            SnackbarDispatcher.getInstance().post(SnackbarDispatcher.CMD_UPDATE, this, 0);
+        }
+    }
+
+    final void applyUpdate() {
+        mUpdateScheduled.set(false);
+        if (mReleased) {
+            return;
+        }
+        final int flags;
+        final String text;
+        final String actionText;
+        final View.OnClickListener actionListener;
+        synchronized (mUpdateLock) {
+            flags = mPendingFlags;
+            text = mPendingText;
+            actionText = mPendingActionText;
+            actionListener = mPendingActionListener;
+            mPendingFlags = 0;
+            mPendingText = null;
+            mPendingActionText = null;
+            mPendingActionListener = null;
+        }
+        final SnackbarTextLayout layout = mView instanceof SnackbarTextLayout ? (SnackbarTextLayout) mView : null;
+        if ((flags & UPDATE_TEXT) != 0 && !TextUtils.equals(text, mText)) {
+            mText = text;
+            mDefaultCoalesceKey = null;
+            if (layout != null) {
+                // The text has a fixed width, so it's only laid out again if its height changes
+                layout.setText(text);
+                if (mShowCoalescedCount && mCoalescedCount > 1) {
+                    mView.onCoalesced(mCoalescedCount);
+                }
+            }
+        }
+        if ((flags & UPDATE_ACTION) != 0) {
+            mActionText = actionText;
+            mActionListener = actionListener;
+            if (layout != null) {
+                // Also when only the listener changed, it may have been set or cleared. The
+                // layouts leave an unchanged action text alone, so nothing is laid out again
+                bindAction(layout);
+            }
+        }
+    }
+
+    private void bindAction(SnackbarTextLayout layout) {
+        // Reads the listener when clicked, so it can be changed without binding again
+        layout.setAction(mActionText, mActionListener != null ? mActionClickListener : null);
+    }
+
+    /**
+     * Take the default layout from the pool, or inflate it, if it hasn't been yet.
+     */
+    private void ensureContentView() {
+        if (mView == null) {
+            if (!mDefaultLayout) {
+                throw new IllegalStateException("The content view has been recycled, "
+                        + "set a new one with setContentView()");
+            }
+            int gravity = mDirection == Snackbar.TOP_BOTTOM ? Gravity.TOP : Gravity.BOTTOM;
+            final Class<? extends SnackbarLayoutBase> layoutClass =
+                    mFlatLayout ? FlatSnackLayout.class : DefaultSnackLayout.class;
+            final SnackbarLayoutPool pool = SnackbarLayoutPool.from(mTargetParent);
+            // Take over the bar left on screen by the previous Snackbar, if any
+            SnackbarLayoutBase defaultLayout = pool.adopt(mTargetParent, layoutClass, mDirection);
+            mAdopted = defaultLayout != null;
+            if (defaultLayout == null) {
+                defaultLayout = pool.acquire(layoutClass, gravity);
+            }
+            if (defaultLayout == null) {
+                defaultLayout = newDefaultLayout(mContext, gravity, mFlatLayout);
+            }
+            final SnackbarTextLayout textLayout = (SnackbarTextLayout) defaultLayout;
+            textLayout.setText(mText);
+            mView = defaultLayout;
+            bindAction(textLayout);
+        }
+    }
+
+    static SnackbarLayoutBase newDefaultLayout(Context context, int gravity, boolean flat) {
+        return flat ? new FlatSnackLayout(context, gravity) : new DefaultSnackLayout(context, gravity);
+    }
+
+    static boolean isDefaultFlatLayout() {
+        return sDefaultFlatLayout;
+    }
+
+    /**
+     * Set the key used to merge identical Snackbars. When this Snackbar is shown while another one
+     * with an equal key is shown or queued, it isn't queued: the other one stays on screen for
+     * the full duration again and counts one more occurrence. The merged Snackbar is never shown:
+     * its {@link Callback} is told it was dismissed, with
+     * {@link Callback#DISMISS_EVENT_CONSECUTIVE}.
+     * <p>
+     * Snackbars made with a text default to a key made of the text, the direction and the
+     * container, as long as they have no action and no {@link Callback}: merging would drop
+     * them. Others default to no key.
+     *
+     * @param key The key, compared with {@link Object#equals(Object)}, or {@code null} to never
+     *            merge this Snackbar.
+     */
+    @NonNull
+    public Snackbar setCoalesceKey(Object key) {
+        mCoalesceKey = key;
+        return this;
+    }
+
+    /**
+     * Set whether the number of merged occurrences is shown, as "×N" after the text for the
+     * default layout.
+     *
+     * @see SnackbarLayoutBase#onCoalesced(int)
+     */
+    @NonNull
+    public Snackbar setShowCoalescedCount(boolean show) {
+        mShowCoalescedCount = show;
+        if (show && mView != null && mCoalescedCount > 1) {
+            mView.onCoalesced(mCoalescedCount);
+        }
+        return this;
+    }
+
+    /**
+     * Set the channel of this Snackbar, to which the rate limit set with
+     * {@link #setChannelRateLimit(String, int, long, int)} applies. Defaults to no channel.
+     */
+    @NonNull
+    public Snackbar setChannel(String channel) {
+        mChannel = channel;
+        return this;
+    }
+
+    public String getChannel() {
+        return mChannel;
+    }
+
+    /**
+     * Set whether the content view goes back to the {@link SnackbarLayoutPool} of the window once
+     * this Snackbar is hidden, for a later Snackbar to show without inflating it. Disabled by
+     * default.
+     * <p>
+     * Only enable it for content views left as made: a recycled layout only has its content,
+     * listeners, position and alpha reset by {@link SnackbarLayoutBase#onRecycled()}, so styling
+     * applied through {@link #getContentView()}, e.g. a background, text color or padding, would
+     * carry over to unrelated Snackbars.
+     * <p>
+     * A recycled custom content view is no longer owned by this Snackbar, so it can't be shown
+     * again without a new one being set with {@link #setContentView(SnackbarLayoutBase)}.
+     *
+     * @throws IllegalStateException if the custom content view has been recycled already.
+     */
+    @NonNull
+    public Snackbar setRecycleContentView(boolean recycle) {
+        if (recycle) {
+            checkContentView();
+        }
+        mRecycleContentView = recycle;
+        return this;
+    }
+
+    /**
+     * Fail where the caller can see it, rather than in the frame showing the Snackbar.
+     */
+    private void checkContentView() {
+        if (mView == null && !mDefaultLayout) {
+            throw new IllegalStateException("The content view has been recycled, "
+                    + "set a new one with setContentView()");
+        }
+    }
+
+    /**
+     * Set whether this Snackbar, when replaced by the next one of the same container and
+     * direction, hands its bar over instead of sliding out. The bar stays on screen, its content
+     * cross-fades to the next Snackbar's in about the fade duration, and the next Snackbar doesn't
+     * animate in. Only applies to Snackbars made with a text, recycling their content view, and
+     * outside of a stack.
+     *
+     * @see Callback#DISMISS_EVENT_CONSECUTIVE
+     */
+    @NonNull
+    public Snackbar setHandOff(boolean handOff) {
+        mHandOff = handOff;
+        return this;
+    }
+
+    /**
+     * Set whether the text of this Snackbar is laid out on a background thread as soon as it's
+     * set, rather than during the first layout of the Snackbar on the main thread. Worth it for
+     * long, multi-line texts. Only applies to Snackbars made with a text and drawn by a
+     * {@link FlatSnackLayout}, see {@link #setFlatLayout(boolean)}, once the container has been
+     * laid out and a flat layout has been made, e.g. by {@link #prewarm(Context)}. Texts laid out
+     * recently at the same width aren't laid out again.
+     */
+    @NonNull
+    public Snackbar setPremeasureText(boolean premeasure) {
+        mPremeasureText = premeasure;
+        if (premeasure && mDefaultLayout) {
+            premeasureText(mText);
         }
-        if (clickListener != null && btAction.getVisibility() == View.VISIBLE) {
-            btAction.setOnClickListener(new View.OnClickListener() {
+        return this;
+    }
+
+    private void premeasureText(final String text) {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            // From updateText(), the container is only read on the main thread
+            sHandler.post(new Runnable() {
                 @Override
-                public void onClick(View v) {
-                    clickListener.onClick(v);
-                    dispatchDismiss(Callback.DISMISS_EVENT_ACTION);
+                public void run() {
+                    premeasureText(text);
                 }
             });
-        } else {
-            btAction.setOnClickListener(null);
+            return;
+        }
+        final ViewGroup parent = mTargetParent;
+        if (parent == null || !mDefaultLayout || !mFlatLayout) {
+            // Released, or not a layout drawing its own text
+            return;
         }
+        final int contentWidth = parent.getWidth() - parent.getPaddingLeft() - parent.getPaddingRight();
+        SnackbarTextMeasurer.getInstance().premeasure(FlatSnackLayout.class, text, contentWidth,
+                mActionText);
+    }
+
+    /**
+     * Set whether this Snackbar, made with a text, is drawn by a {@link FlatSnackLayout}, a single
+     * view, rather than a {@link DefaultSnackLayout}. Takes effect the next time the content view
+     * is made, from the next {@link #show()} if it has been recycled.
+     *
+     * @see #setDefaultFlatLayout(boolean)
+     */
+    @NonNull
+    public Snackbar setFlatLayout(boolean flat) {
+        mFlatLayout = flat;
+        return this;
+    }
+
+    /**
+     * Set whether the Snackbars made with a text from now on use a {@link FlatSnackLayout}.
+     * Defaults to {@code false}.
+     *
+     * @see #setFlatLayout(boolean)
+     */
+    public static void setDefaultFlatLayout(boolean flat) {
+        sDefaultFlatLayout = flat;
+    }
+
+    /**
+     * Set whether the content view is measured and laid out by this Snackbar, from the current
+     * size of the container, before being added to it. The entry animation then starts right
+     * away, in the traversal adding the view, instead of after the container's next layout,
+     * which saves one or two frames between {@link #show()} and the first visible pixel.
+     * <p>
+     * Only applies when the container is a {@link FrameLayout} which has already been laid out
+     * and isn't waiting for a layout, otherwise the Snackbar waits for the layout as usual.
+     */
+    @NonNull
+    public Snackbar setLayoutBeforeShow(boolean layoutBeforeShow) {
+        mLayoutBeforeShow = layoutBeforeShow;
         return this;
     }
 
+    /**
+     * Set the scope of this Snackbar. Snackbars of a scope are queued and shown one at a time,
+     * independently of the Snackbars of other scopes. Must not be changed while the Snackbar is
+     * shown or queued.
+     *
+     * @param scope Any object, {@link #SCOPE_CONTAINER} to use the parent the Snackbar is shown
+     *              in, or {@code null} to share the global scope. The scope is only weakly held.
+     * @see #setDefaultScope(Object)
+     */
+    @NonNull
+    public Snackbar setScope(Object scope) {
+        mManager = SnackbarManager.forScope(scope == SCOPE_CONTAINER ? mTargetParent : scope);
+        return this;
+    }
+
+    /**
+     * Set the scope of the Snackbars made from now on. Defaults to {@code null}, a single global
+     * scope. {@link #SCOPE_CONTAINER} lets every window or pane show its own Snackbars in
+     * parallel.
+     *
+     * @see #setScope(Object)
+     */
+    public static void setDefaultScope(Object scope) {
+        sDefaultScope = scope;
+    }
+
+    private Object resolveCoalesceKey() {
+        if (mCoalesceKey != DEFAULT_COALESCE_KEY) {
+            return mCoalesceKey;
+        }
+        if (mActionText != null || mCallback != null) {
+            // Its action or callback would be lost in the merge
+            return null;
+        }
+        if (mDefaultCoalesceKey == null && mText != null) {
+            // Built once per text rather than on every show
+            mDefaultCoalesceKey = new DefaultCoalesceKey(mTargetParent, mDirection, mText);
+        }
+        return mDefaultCoalesceKey;
+    }
+
+    final void onCoalesced(int count) {
+        if (mReleased) {
+            return;
+        }
+        mCoalescedCount = count;
+        if (mShowCoalescedCount && mView != null) {
+            mView.onCoalesced(count);
+        }
+    }
+
 
     /**
      * Make a Snackbar to display
@@ -296,7 +828,22 @@ public final class Snackbar {
      * @param animationFadeDuration
      */
     public static Snackbar make(@NonNull View view, @NonNull SnackbarLayoutBase layout, @Direction int direction, @Duration int duration, int animationDuration, int animationFadeDuration) {
-        Snackbar snackbar = new Snackbar(findSuitableParent(view), layout);
+        SnackbarTrace.beginSection(SnackbarTrace.MAKE);
+        try {
+            return makeIn(findSuitableParent(view), layout, direction, duration, animationDuration, animationFadeDuration);
+        } finally {
+            SnackbarTrace.endSection();
+        }
+    }
+
+    /**
+     * Make a Snackbar to display, held by {@code container} without walking up the view tree.
+     *
+     * @param container The parent of the Snackbar's view, e.g. from {@link #findContainer(View)}.
+     * @see #make(View, SnackbarLayoutBase, int, int, int, int)
+     */
+    public static Snackbar makeIn(@NonNull ViewGroup container, @NonNull SnackbarLayoutBase layout, @Direction int direction, @Duration int duration, int animationDuration, int animationFadeDuration) {
+        Snackbar snackbar = new Snackbar(container, layout);
         snackbar.setDirection(direction);
         snackbar.setDuration(duration);
         snackbar.setAnimationDuration(animationDuration);
@@ -304,7 +851,72 @@ public final class Snackbar {
         return snackbar;
     }
 
+    /**
+     * Returns the parent {@link #make} would pick for {@code view}, to be kept and passed to
+     * {@link #makeIn}. Must be called on the main thread.
+     */
+    public static ViewGroup findContainer(@NonNull View view) {
+        return findSuitableParent(view);
+    }
+
+    /**
+     * Parent resolved for a view, trusted until the view is detached. A view is detached when
+     * it's moved, or any of its ancestors is, even within the same window, so the parent found
+     * while it stays attached doesn't change.
+     */
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB_MR1)
+    private static final class ParentEntry implements View.OnAttachStateChangeListener {
+        final WeakReference<ViewGroup> parent;
+
+        ParentEntry(ViewGroup parent) {
+            this.parent = new WeakReference<>(parent);
+        }
+
+        @Override
+        public void onViewAttachedToWindow(View v) {
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(View v) {
+            v.removeOnAttachStateChangeListener(this);
+            sParentCache.remove(v);
+        }
+    }
+
+    // Main thread only
+    private static final WeakHashMap<View, ParentEntry> sParentCache = new WeakHashMap<>();
+
     private static ViewGroup findSuitableParent(View view) {
+        SnackbarTrace.beginSection(SnackbarTrace.FIND_PARENT);
+        try {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB_MR1
+                    || view.getWindowToken() == null) {
+                // Not attached, or detaches can't be listened to below API 12: nothing to tell
+                // when the result goes stale
+                return walkToSuitableParent(view);
+            }
+            final ParentEntry entry = sParentCache.get(view);
+            if (entry != null) {
+                final ViewGroup parent = entry.parent.get();
+                if (parent != null) {
+                    return parent;
+                }
+                view.removeOnAttachStateChangeListener(entry);
+                sParentCache.remove(view);
+            }
+            final ViewGroup parent = walkToSuitableParent(view);
+            if (parent != null) {
+                final ParentEntry added = new ParentEntry(parent);
+                view.addOnAttachStateChangeListener(added);
+                sParentCache.put(view, added);
+            }
+            return parent;
+        } finally {
+            SnackbarTrace.endSection();
+        }
+    }
+
+    private static ViewGroup walkToSuitableParent(View view) {
         ViewGroup fallback = null;
         do {
             if (view instanceof FrameLayout) {
@@ -331,17 +943,20 @@ public final class Snackbar {
     @NonNull
     public Snackbar setContentView(SnackbarLayoutBase layout) {
         mView = layout;
+        mDefaultLayout = false;
         return this;
     }
 
     @NonNull
     public SnackbarLayoutBase getContentView() {
+        ensureContentView();
         return mView;
     }
 
     @NonNull
     public Snackbar setDirection(@Direction int direction) {
         mDirection = direction;
+        mDefaultCoalesceKey = null;
         return this;
     }
 
@@ -387,6 +1002,21 @@ public final class Snackbar {
         return mAnimFadeDuration;
     }
 
+    /**
+     * Set how the view moves in and out, e.g. one of {@link SnackbarAnimators}. By default it
+     * slides in the direction of the Snackbar.
+     */
+    @NonNull
+    public Snackbar setAnimator(SnackbarAnimator animator) {
+        mAnimator = animator;
+        return this;
+    }
+
+    @NonNull
+    public SnackbarAnimator getAnimator() {
+        return mAnimator != null ? mAnimator : SnackbarAnimators.slide(mDirection);
+    }
+
     /**
      * Set a callback to be called when this the visibility of this {@link Snackbar} changes.
      */
@@ -400,7 +1030,238 @@ public final class Snackbar {
      * Show the {@link Snackbar}.
      */
     public void show() {
-        SnackbarManager.getInstance().show(mDuration, mManagerCallback);
+        show(PRIORITY_NORMAL);
+    }
+
+    /**
+     * Show the {@link Snackbar}. Snackbars waiting to be shown are ordered by priority, then by
+     * the order in which they were shown. A Snackbar only replaces the current one if its
+     * priority is at least as high.
+     *
+     * @param priority Any int, usually one of {@link #PRIORITY_LOW}, {@link #PRIORITY_NORMAL}
+     *                 or {@link #PRIORITY_HIGH}.
+     * @throws IllegalStateException if the custom content view has been recycled.
+     * @see #setRecycleContentView(boolean)
+     */
+    public void show(int priority) {
+        if (mReleased) {
+            return;
+        }
+        checkContentView();
+        if (mShowTime == 0) {
+            mShowTime = SystemClock.uptimeMillis();
+        }
+        mManager.show(mDuration, priority, resolveCoalesceKey(), mChannel,
+                mManagerCallback);
+    }
+
+    /**
+     * Set how many Snackbars may wait to be shown in each scope, and what happens when one more
+     * is shown while the queue is full.
+     *
+     * @param capacity       The maximum number of queued Snackbars, must be > 0.
+     * @param overflowPolicy One of {@link #OVERFLOW_DROP_OLDEST}, {@link #OVERFLOW_DROP_NEWEST}
+     *                       or {@link #OVERFLOW_REJECT_LOWEST_PRIORITY}.
+     */
+    public static void setQueueCapacity(int capacity, @OverflowPolicy int overflowPolicy) {
+        for (SnackbarManager manager : SnackbarManager.getAll()) {
+            manager.setQueueCapacity(capacity, overflowPolicy);
+        }
+    }
+
+    /**
+     * Set the listener told about the latency, time on screen and queueing of every Snackbar,
+     * e.g. a {@link SnackbarMetrics}. Pass {@code null} to stop collecting.
+     */
+    public static void setMetricsListener(SnackbarMetricsListener listener) {
+        SnackbarManager.sMetricsListener = listener;
+    }
+
+    /**
+     * Set the listener told how smoothly each Snackbar animation runs, or {@code null} to stop
+     * measuring. Frames are only measured from API 16 and while a listener is set.
+     */
+    public static void setFrameListener(SnackbarFrameListener listener) {
+        SnackbarFrameMonitor.sListener = listener;
+    }
+
+    /**
+     * Do the one-off work of the first Snackbar ahead of time, while the main thread is idle, so
+     * that the first {@link #show()} costs the same as the next ones: create the manager and
+     * inflate the default layout once to load its classes and resolve its styles.
+     *
+     * @param context The themed context the Snackbars will be made with, usually the Activity.
+     */
+    public static void prewarm(@NonNull Context context) {
+        postPrewarm(new SnackbarPrewarmer(context, null, 0));
+    }
+
+    /**
+     * Same as {@link #prewarm(Context)}, and also put {@code count} default layouts in the
+     * {@link SnackbarLayoutPool} of the window {@code view} belongs to, one per idle slot.
+     *
+     * @param view  Any view of the window the Snackbars will be shown in.
+     * @param count How many layouts to inflate ahead of time.
+     */
+    public static void prewarm(@NonNull View view, int count) {
+        postPrewarm(new SnackbarPrewarmer(view.getContext(), view, count));
+    }
+
+    private static void postPrewarm(final SnackbarPrewarmer prewarmer) {
+        // The idle handler has to be added from the main thread
+        sHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                Looper.myQueue().addIdleHandler(prewarmer);
+            }
+        });
+    }
+
+    /**
+     * Set the scheduler running the timeouts and rate limits of every scope, e.g. a
+     * {@link VirtualTimeScheduler} in tests, or one aligned with the host's own frame loop.
+     * Pending timeouts move over with the time they have left. Defaults to
+     * {@link MainLooperScheduler}.
+     */
+    public static void setScheduler(@NonNull SnackbarScheduler scheduler) {
+        for (SnackbarManager manager : SnackbarManager.getAll()) {
+            manager.setScheduler(scheduler);
+        }
+    }
+
+    /**
+     * Set how many Snackbars of a scope may be shown at the same time. Above 1, Snackbars
+     * entering from the same edge of a parent are stacked, the newest against the edge, and each
+     * one keeps its own timeout. Defaults to 1.
+     * <p>
+     * Stacking moves the views with translations, which requires API 14.
+     */
+    public static void setMaxVisible(int maxVisible) {
+        for (SnackbarManager manager : SnackbarManager.getAll()) {
+            manager.setMaxVisible(maxVisible);
+        }
+    }
+
+    /**
+     * Returns how many Snackbars have been dropped because the queue was full.
+     */
+    public static long getDroppedCount() {
+        long count = 0;
+        for (SnackbarManager manager : SnackbarManager.getAll()) {
+            count += manager.getDroppedCount();
+        }
+        return count;
+    }
+
+    /**
+     * Limit how many Snackbars of a channel can be queued to be shown per time window, in each
+     * scope. Replaces any previous limit of the channel, and queues the Snackbars it held back.
+     *
+     * @param channel  The channel, see {@link #setChannel(String)}.
+     * @param permits  How many Snackbars per window, must be > 0.
+     * @param windowMs The window in milliseconds, must be > 0.
+     * @param policy   What happens to the Snackbars over the limit. One of
+     *                 {@link #RATE_LIMIT_DROP}, {@link #RATE_LIMIT_DELAY} or
+     *                 {@link #RATE_LIMIT_COALESCE}.
+     */
+    public static void setChannelRateLimit(@NonNull String channel, int permits, long windowMs,
+                                           @RateLimitPolicy int policy) {
+        for (SnackbarManager manager : SnackbarManager.getAll()) {
+            manager.setChannelRateLimit(channel, permits, windowMs, policy);
+        }
+    }
+
+    /**
+     * Remove the rate limit of a channel, and queue the Snackbars it held back.
+     */
+    public static void clearChannelRateLimit(@NonNull String channel) {
+        for (SnackbarManager manager : SnackbarManager.getAll()) {
+            manager.clearChannelRateLimit(channel);
+        }
+    }
+
+    /**
+     * Returns how many Snackbars of a rate limited channel have been let through.
+     */
+    public static long getChannelAdmittedCount(@NonNull String channel) {
+        long count = 0;
+        for (SnackbarManager manager : SnackbarManager.getAll()) {
+            count += manager.getChannelAdmittedCount(channel);
+        }
+        return count;
+    }
+
+    /**
+     * Returns how many Snackbars of a rate limited channel have been dropped or merged.
+     */
+    public static long getChannelRejectedCount(@NonNull String channel) {
+        long count = 0;
+        for (SnackbarManager manager : SnackbarManager.getAll()) {
+            count += manager.getChannelRejectedCount(channel);
+        }
+        return count;
+    }
+
+    /**
+     * Release this Snackbar when {@code host} is destroyed, see {@link #release()}, so that a
+     * Snackbar still referenced, shown or queued doesn't keep the destroyed host alive nor get
+     * shown into it later. Requires API 14, below it call {@link #release()} from the host's
+     * {@code onDestroy()}.
+     */
+    @NonNull
+    public Snackbar bindTo(@NonNull Activity host) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            SnackbarLifecycle.bind(host, this);
+        }
+        return this;
+    }
+
+    /**
+     * Take this Snackbar off the screen and out of its queue at once, without animation and
+     * without calling its {@link Callback}, and drop everything it holds: views, context,
+     * listeners and pending work. A released Snackbar can't be shown again. Must be called on
+     * the main thread.
+     */
+    public void release() {
+        if (mReleased) {
+            return;
+        }
+        mReleased = true;
+        mManager.release(mManagerCallback);
+        SnackbarDispatcher.getInstance().remove(this);
+        sHandler.removeCallbacks(mViewListener);
+        closeFrameWindow();
+        SnackbarTrace.endAsync(SnackbarTrace.AWAIT_LAYOUT, mLayoutTraceCookie);
+        mLayoutTraceCookie = 0;
+        if (mView != null) {
+            mView.removeCallbacks(mHandOffRunnable);
+            mView.setOnAttachStateChangeListener(null);
+            mView.setOnLayoutChangeListener(null);
+            ViewCompat.animate(mView).cancel();
+            mView.clearAnimation();
+            mView.getAnimationBridge().reset();
+            if (mStack != null) {
+                mStack.remove(mView, mAnimDuration);
+                mStack = null;
+            }
+            final ViewParent parent = mView.getParent();
+            if (parent instanceof ViewGroup) {
+                ((ViewGroup) parent).removeView(mView);
+            }
+        }
+        synchronized (mUpdateLock) {
+            mPendingFlags = 0;
+            mPendingText = null;
+            mPendingActionText = null;
+            mPendingActionListener = null;
+        }
+        mView = null;
+        mTargetParent = null;
+        mContext = null;
+        // Holds the container too
+        mDefaultCoalesceKey = null;
+        mCallback = null;
+        mActionListener = null;
     }
 
     /**
@@ -418,218 +1279,325 @@ public final class Snackbar {
     }
 
     private void dispatchDismiss(@Callback.DismissEvent int event) {
-        SnackbarManager.getInstance().dismiss(mManagerCallback, event);
+        mManager.dismiss(mManagerCallback, event);
     }
 
     /**
      * Return whether this {@link Snackbar} is currently being shown.
      */
     public boolean isShown() {
-        return SnackbarManager.getInstance().isCurrent(mManagerCallback);
+        return mManager.isCurrent(mManagerCallback);
     }
 
     /**
      * Returns whether this {@link Snackbar} is currently being shown, or is queued to be shown next.
      */
     public boolean isShownOrQueued() {
-        return SnackbarManager.getInstance().isCurrentOrNext(mManagerCallback);
+        return mManager.isCurrentOrNext(mManagerCallback);
     }
 
     final void showView() {
-        if (mView.getParent() == null) {
-            mTargetParent.addView(mView);
+        if (mReleased) {
+            return;
         }
-
-        mView.setOnAttachStateChangeListener(new SnackbarLayoutBase.OnAttachStateChangeListener() {
-            @Override
-            public void onViewAttachedToWindow(View v) {
+        SnackbarTrace.beginSection(SnackbarTrace.SHOW_VIEW);
+        try {
+            mViewAddedTime = SystemClock.uptimeMillis();
+            ensureContentView();
+            if (mShowCoalescedCount && mCoalescedCount > 1) {
+                mView.onCoalesced(mCoalescedCount);
             }
-
-            @Override
-            public void onViewDetachedFromWindow(View v) {
-                if (isShownOrQueued()) {
-                    // If we haven't already been dismissed then this event is coming from a
-                    // non-user initiated action. Hence we need to make sure that we callback
-                    // and keep our state up to date. We need to post the call since removeView()
-                    // will call through to onDetachedFromWindow and thus overflow.
-                    sHandler.post(new Runnable() {
-                        @Override
-                        public void run() {
-                            onViewHidden(Callback.DISMISS_EVENT_MANUAL);
-                        }
-                    });
+            if (mView.getParent() == null) {
+                if (mLayoutBeforeShow) {
+                    layoutBeforeAdd();
                 }
+                mTargetParent.addView(mView);
             }
-        });
 
-        if (ViewCompat.isLaidOut(mView)) {
-            // If the view is already laid out, animate it now
-            animateViewIn();
-        } else {
-            // Otherwise, add one of our layout change listeners and animate it in when laid out
-            mView.setOnLayoutChangeListener(new SnackbarLayoutBase.OnLayoutChangeListener() {
-                @Override
-                public void onLayoutChange(View view, int left, int top, int right, int bottom) {
-                    animateViewIn();
-                    mView.setOnLayoutChangeListener(null);
-                }
-            });
+            mView.setOnAttachStateChangeListener(mViewListener);
+
+            if (ViewCompat.isLaidOut(mView)) {
+                // If the view is already laid out, animate it now
+                animateViewIn();
+            } else {
+                // Otherwise, add our layout change listener and animate it in when laid out
+                mLayoutTraceCookie = SnackbarTrace.beginAsync(SnackbarTrace.AWAIT_LAYOUT);
+                mView.setOnLayoutChangeListener(mViewListener);
+            }
+        } finally {
+            SnackbarTrace.endSection();
         }
     }
 
-    private void animateViewIn() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
-            ViewPropertyAnimatorCompat vpac = ViewCompat.animate(mView);
-
-            if (mDirection == LEFT_RIGHT) {
-                ViewCompat.setTranslationX(mView, -mView.getWidth());
-                vpac.translationX(0f);
-            } else if (mDirection == TOP_BOTTOM) {
-                ViewCompat.setTranslationY(mView, -mView.getHeight());
-                vpac.translationY(0f);
-            } else if (mDirection == RIGHT_LEFT) {
-                ViewCompat.setTranslationX(mView, mView.getWidth());
-                vpac.translationX(0f);
-            } else if (mDirection == BOTTOM_TOP) {
-                ViewCompat.setTranslationY(mView, mView.getHeight());
-                vpac.translationY(0f);
-            }
-
-            vpac.setInterpolator(new FastOutSlowInInterpolator()).setDuration(mAnimDuration)
-                    .setListener(new ViewPropertyAnimatorListenerAdapter() {
-                        @Override
-                        public void onAnimationStart(View view) {
-                            mView.animateChildrenIn(mAnimDuration - mAnimFadeDuration, mAnimFadeDuration);
-                        }
-
-                        @Override
-                        public void onAnimationEnd(View view) {
-                            if (mCallback != null) {
-                                mCallback.onShow(Snackbar.this);
-                            }
-                            SnackbarManager.getInstance().onShown(mManagerCallback);
-                        }
-                    }).start();
-        } else {
-            Animation anim = null;
+    /**
+     * Measure and lay out the detached view as its {@link FrameLayout} parent will, so that it
+     * can be animated in as soon as it's added. The parent's next layout gives it the same bounds.
+     */
+    private void layoutBeforeAdd() {
+        final ViewGroup parent = mTargetParent;
+        final ViewGroup.LayoutParams params = mView.getLayoutParams();
+        if (!(parent instanceof FrameLayout) || !(params instanceof FrameLayout.LayoutParams)
+                || parent.getWidth() == 0 || parent.isLayoutRequested()) {
+            // Not laid out yet, or about to change: wait for the layout
+            return;
+        }
+        SnackbarTrace.beginSection(SnackbarTrace.PRE_LAYOUT);
+        try {
+            final FrameLayout.LayoutParams lp = (FrameLayout.LayoutParams) params;
+            final int width = parent.getWidth() - parent.getPaddingLeft() - parent.getPaddingRight();
+            final int height = parent.getHeight() - parent.getPaddingTop() - parent.getPaddingBottom();
+            final int widthSpec = View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY);
+            final int heightSpec = View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY);
+            mView.measure(ViewGroup.getChildMeasureSpec(widthSpec, lp.leftMargin + lp.rightMargin, lp.width),
+                    ViewGroup.getChildMeasureSpec(heightSpec, lp.topMargin + lp.bottomMargin, lp.height));
+
+            sContainerRect.set(parent.getPaddingLeft() + lp.leftMargin,
+                    parent.getPaddingTop() + lp.topMargin,
+                    parent.getWidth() - parent.getPaddingRight() - lp.rightMargin,
+                    parent.getHeight() - parent.getPaddingBottom() - lp.bottomMargin);
+            // The default gravity of a FrameLayout child
+            final int gravity = lp.gravity != -1 ? lp.gravity : Gravity.TOP | GravityCompat.START;
+            GravityCompat.apply(gravity, mView.getMeasuredWidth(), mView.getMeasuredHeight(),
+                    sContainerRect, sChildRect, ViewCompat.getLayoutDirection(parent));
+            mView.layout(sChildRect.left, sChildRect.top, sChildRect.right, sChildRect.bottom);
+        } finally {
+            SnackbarTrace.endSection();
+        }
+    }
 
-            if (mDirection == LEFT_RIGHT) {
-                anim = AnimationUtils.loadAnimation(mView.getContext(), R.anim.oginotihiro_snackbar_left_in);
-            } else if (mDirection == TOP_BOTTOM) {
-                anim = AnimationUtils.loadAnimation(mView.getContext(), R.anim.oginotihiro_snackbar_top_in);
-            } else if (mDirection == RIGHT_LEFT) {
-                anim = AnimationUtils.loadAnimation(mView.getContext(), R.anim.oginotihiro_snackbar_right_in);
-            } else if (mDirection == BOTTOM_TOP) {
-                anim = AnimationUtils.loadAnimation(mView.getContext(), R.anim.oginotihiro_snackbar_bottom_in);
+    private void animateViewIn() {
+        SnackbarTrace.beginSection(SnackbarTrace.ANIMATE_IN);
+        try {
+            mEntryStartTime = SystemClock.uptimeMillis();
+            if (mAdopted) {
+                // The bar is already in place, only its content changes
+                mAdopted = false;
+                mView.animateChildrenIn(0, mAnimFadeDuration / 2);
+                onEntered();
+                return;
+            }
+            openFrameWindow(true);
+            if (mManager.getMaxVisible() > 1
+                    && Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+                // Make room against the edge, the others slide away together
+                mStack = SnackbarStack.from(mTargetParent, mDirection);
+                mStack.push(mView, mAnimDuration);
             }
 
-            if (anim == null) return;
-
-            anim.setInterpolator(new FastOutSlowInInterpolator());
-            anim.setDuration(mAnimDuration);
-            anim.setAnimationListener(new Animation.AnimationListener() {
-                @Override
-                public void onAnimationStart(Animation animation) {
-                }
-
-                @Override
-                public void onAnimationEnd(Animation animation) {
-                    if (mCallback != null) {
-                        mCallback.onShow(Snackbar.this);
-                    }
-                    SnackbarManager.getInstance().onShown(mManagerCallback);
-                }
-
-                @Override
-                public void onAnimationRepeat(Animation animation) {
-                }
-            });
-            mView.setAnimation(anim);
+            mViewListener.mEntering = true;
+            getAnimator().animateIn(mView, mAnimDuration, mViewListener);
+        } finally {
+            SnackbarTrace.endSection();
         }
     }
 
     final void hideView(int event) {
-        if (mView.getVisibility() != View.VISIBLE) {
+        if (mReleased) {
+            return;
+        }
+        if (mView == null || mView.getParent() == null || mView.getVisibility() != View.VISIBLE) {
+            // Never made it on screen, e.g. dismissed while queued
             onViewHidden(event);
+        } else if (mHandOff && event == Callback.DISMISS_EVENT_CONSECUTIVE && mDefaultLayout
+                && mRecycleContentView && mStack == null) {
+            // Keep the bar, fade its content out and leave it to the next Snackbar
+            mHideEvent = event;
+            mExitStartTime = SystemClock.uptimeMillis();
+            openFrameWindow(false);
+            mView.animateChildrenOut(0, mAnimFadeDuration / 2);
+            mView.postDelayed(mHandOffRunnable, mAnimFadeDuration / 2);
         } else {
             animateViewOut(event);
         }
     }
 
-    private void animateViewOut(final int event) {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
-            ViewPropertyAnimatorCompat vpac = ViewCompat.animate(mView);
-
-            if (mDirection == LEFT_RIGHT) {
-                vpac.translationX(-mView.getWidth());
-            } else if (mDirection == TOP_BOTTOM) {
-                vpac.translationY(-mView.getHeight());
-            } else if (mDirection == RIGHT_LEFT) {
-                vpac.translationX(mView.getWidth());
-            } else if (mDirection == BOTTOM_TOP) {
-                vpac.translationY(mView.getHeight());
-            }
-
-            vpac.setInterpolator(new FastOutSlowInInterpolator())
-                    .setDuration(mAnimDuration)
-                    .setListener(new ViewPropertyAnimatorListenerAdapter() {
-                        @Override
-                        public void onAnimationStart(View view) {
-                            mView.animateChildrenOut(0, mAnimFadeDuration);
-                        }
-
-                        @Override
-                        public void onAnimationEnd(View view) {
-                            onViewHidden(event);
-                        }
-                    }).start();
-        } else {
-            Animation anim = null;
+    private void animateViewOut(int event) {
+        SnackbarTrace.beginSection(SnackbarTrace.ANIMATE_OUT);
+        try {
+            mHideEvent = event;
+            mExitStartTime = SystemClock.uptimeMillis();
+            openFrameWindow(false);
+            SnackbarAnimator animator = getAnimator();
+            if (mStack != null) {
+                if (!mStack.isNewest(mView)) {
+                    // Sliding out would cross the newer ones, fade out in place instead
+                    animator = SnackbarAnimators.FADE;
+                }
+                mStack.remove(mView, mAnimDuration);
+                mStack = null;
+            }
+
+            mViewListener.mEntering = false;
+            animator.animateOut(mView, mAnimDuration, mViewListener);
+        } finally {
+            SnackbarTrace.endSection();
+        }
+    }
+
+    /**
+     * Listens to the view and its animations for the whole life of the Snackbar, so that
+     * showing and hiding it again does not allocate new listeners.
+     */
+    private final class ViewListener implements SnackbarLayoutBase.OnAttachStateChangeListener,
+            SnackbarLayoutBase.OnLayoutChangeListener, SnackbarAnimator.Callback, Runnable {
+        boolean mEntering;
 
-            if (mDirection == LEFT_RIGHT) {
-                anim = AnimationUtils.loadAnimation(mView.getContext(), R.anim.oginotihiro_snackbar_left_out);
-            } else if (mDirection == TOP_BOTTOM) {
-                anim = AnimationUtils.loadAnimation(mView.getContext(), R.anim.oginotihiro_snackbar_top_out);
-            } else if (mDirection == RIGHT_LEFT) {
-                anim = AnimationUtils.loadAnimation(mView.getContext(), R.anim.oginotihiro_snackbar_right_out);
-            } else if (mDirection == BOTTOM_TOP) {
-                anim = AnimationUtils.loadAnimation(mView.getContext(), R.anim.oginotihiro_snackbar_bottom_out);
+        @Override
+        public void onViewAttachedToWindow(View v) {
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(View v) {
+            if (isShownOrQueued()) {
+                // If we haven't already been dismissed then this event is coming from a
+                // non-user initiated action. Hence we need to make sure that we callback
+                // and keep our state up to date. We need to post the call since removeView()
+                // will call through to onDetachedFromWindow and thus overflow.
+                sHandler.post(this);
             }
+        }
+
+        @Override
+        public void run() {
+            onViewHidden(Callback.DISMISS_EVENT_MANUAL);
+        }
 
-            if (anim == null) return;
+        @Override
+        public void onLayoutChange(View view, int left, int top, int right, int bottom) {
+            SnackbarTrace.endAsync(SnackbarTrace.AWAIT_LAYOUT, mLayoutTraceCookie);
+            mLayoutTraceCookie = 0;
+            animateViewIn();
+            mView.setOnLayoutChangeListener(null);
+        }
 
-            anim.setInterpolator(new FastOutSlowInInterpolator());
-            anim.setDuration(ANIMATION_DURATION);
-            anim.setAnimationListener(new Animation.AnimationListener() {
-                @Override
-                public void onAnimationStart(Animation animation) {
-                }
+        @Override
+        public void onAnimationStart(View view) {
+            if (mEntering) {
+                mView.animateChildrenIn(mAnimDuration - mAnimFadeDuration, mAnimFadeDuration);
+            } else {
+                mView.animateChildrenOut(0, mAnimFadeDuration);
+            }
+        }
 
-                @Override
-                public void onAnimationEnd(Animation animation) {
-                    onViewHidden(event);
+        @Override
+        public void onAnimationEnd(View view) {
+            if (mEntering) {
+                if (mStack != null) {
+                    mStack.onEntered(mView);
                 }
+                onEntered();
+            } else {
+                onViewHidden(mHideEvent);
+            }
+        }
 
-                @Override
-                public void onAnimationRepeat(Animation animation) {
-                }
-            });
-            mView.startAnimation(anim);
+    }
+
+    private void onEntered() {
+        closeFrameWindow();
+        mEnteredTime = SystemClock.uptimeMillis();
+        final SnackbarMetricsListener metrics = SnackbarManager.sMetricsListener;
+        if (metrics != null) {
+            metrics.onShown(elapsed(mShowTime, mViewAddedTime),
+                    elapsed(mViewAddedTime, mEntryStartTime), elapsed(mEntryStartTime, mEnteredTime));
         }
+        if (mCallback != null) {
+            mCallback.onShow(this);
+        }
+        mManager.onShown(mManagerCallback);
     }
 
-    private void onViewHidden(int event) {
-        // First remove the view from the parent (if attached)
-        final ViewParent parent = mView.getParent();
-        if (parent instanceof ViewGroup) {
-            ((ViewGroup) parent).removeView(mView);
+    private static long elapsed(long from, long to) {
+        return from == 0 || to == 0 ? -1 : to - from;
+    }
+
+    private void openFrameWindow(boolean entering) {
+        // An exit may interrupt the entry, which then ends here
+        closeFrameWindow();
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN
+                || SnackbarFrameMonitor.sListener == null) {
+            // Nothing measured, the monitor isn't even loaded below API 16
+            return;
+        }
+        mFrameWindow = SnackbarFrameMonitor.getInstance().begin(mView);
+        mFrameWindowEntering = entering;
+    }
+
+    private void closeFrameWindow() {
+        if (mFrameWindow >= 0) {
+            SnackbarFrameMonitor.getInstance().end(mFrameWindow, mFrameWindowEntering, mDirection);
+            mFrameWindow = -1;
+        }
+    }
+
+    private void reportHidden(int event) {
+        closeFrameWindow();
+        // Hidden before its first layout
+        SnackbarTrace.endAsync(SnackbarTrace.AWAIT_LAYOUT, mLayoutTraceCookie);
+        mLayoutTraceCookie = 0;
+        final SnackbarMetricsListener metrics = SnackbarManager.sMetricsListener;
+        if (metrics != null) {
+            final long now = SystemClock.uptimeMillis();
+            metrics.onHidden(event, elapsed(mEnteredTime, mExitStartTime), elapsed(mExitStartTime, now));
         }
-        // Now call the dismiss listener (if available)
+        mShowTime = 0;
+        mViewAddedTime = 0;
+        mEntryStartTime = 0;
+        mEnteredTime = 0;
+        mExitStartTime = 0;
+    }
+
+    private void handOffView() {
+        if (mView == null || mView.getParent() == null) {
+            // Detached meanwhile, nothing to hand off
+            onViewHidden(mHideEvent);
+            return;
+        }
+        mView.setOnAttachStateChangeListener(null);
+        SnackbarLayoutPool.from(mTargetParent).park(mView, mDirection);
+        mView = null;
+        mCoalescedCount = 1;
+        reportHidden(mHideEvent);
         if (mCallback != null) {
-            mCallback.onDismissed(this, event);
+            mCallback.onDismissed(this, mHideEvent);
+        }
+        mManager.onDismissed(mManagerCallback);
+    }
+
+    private void onViewHidden(int event) {
+        SnackbarTrace.beginSection(SnackbarTrace.VIEW_HIDDEN);
+        try {
+            if (mStack != null) {
+                mStack.remove(mView, mAnimDuration);
+                mStack = null;
+            }
+            // Hidden once: drop a detach reported earlier and not handled yet, and stop
+            // listening before removing the view, or its detach would hide it a second time
+            sHandler.removeCallbacks(mViewListener);
+            if (mView != null) {
+                mView.setOnAttachStateChangeListener(null);
+            }
+            // First remove the view from the parent (if attached)
+            final ViewParent parent = mView != null ? mView.getParent() : null;
+            if (parent instanceof ViewGroup) {
+                ((ViewGroup) parent).removeView(mView);
+            }
+            mCoalescedCount = 1;
+            reportHidden(event);
+            // Now call the dismiss listener (if available)
+            if (mCallback != null) {
+                mCallback.onDismissed(this, event);
+            }
+            // Tell the SnackbarManager that it has been dismissed
+            mManager.onDismissed(mManagerCallback);
+            // Finally, hand the view over to the next Snackbar of this window
+            if (mRecycleContentView && mView != null) {
+                SnackbarLayoutPool.from(mTargetParent).release(mView);
+                mView = null;
+            }
+        } finally {
+            SnackbarTrace.endSection();
         }
-        // Finally, tell the SnackbarManager that it has been dismissed
-        SnackbarManager.getInstance().onDismissed(mManagerCallback);
     }
 
     public static abstract class SnackbarLayoutBase extends FrameLayout {
@@ -645,6 +1613,7 @@ public final class Snackbar {
 
         private OnLayoutChangeListener mOnLayoutChangeListener;
         private OnAttachStateChangeListener mOnAttachStateChangeListener;
+        private SnackbarAnimationBridge mAnimationBridge;
 
         void setOnLayoutChangeListener(OnLayoutChangeListener onLayoutChangeListener) {
             mOnLayoutChangeListener = onLayoutChangeListener;
@@ -654,6 +1623,35 @@ public final class Snackbar {
             mOnAttachStateChangeListener = onAttachStateChangeListener;
         }
 
+        SnackbarAnimationBridge getAnimationBridge() {
+            if (mAnimationBridge == null) {
+                mAnimationBridge = new SnackbarAnimationBridge(this);
+            }
+            return mAnimationBridge;
+        }
+
+        final void recycle() {
+            mOnLayoutChangeListener = null;
+            mOnAttachStateChangeListener = null;
+            if (mAnimationBridge != null) {
+                mAnimationBridge.reset();
+            }
+            clearAnimation();
+            ViewCompat.setTranslationX(this, 0f);
+            ViewCompat.setTranslationY(this, 0f);
+            ViewCompat.setAlpha(this, 1f);
+            setVisibility(VISIBLE);
+            onRecycled();
+        }
+
+        /**
+         * Called when the layout goes back to the {@link SnackbarLayoutPool}. Reset any content
+         * and listener so that the next Snackbar starts from a blank layout.
+         */
+        protected void onRecycled() {
+            // empty
+        }
+
         public SnackbarLayoutBase(Context context) {
             this(context, null);
         }
@@ -686,6 +1684,17 @@ public final class Snackbar {
             }
         }
 
+        /**
+         * Called when identical Snackbars have been merged into this one and the count should be
+         * shown.
+         *
+         * @param count How many times the Snackbar has been shown, including the first one.
+         * @see Snackbar#setShowCoalescedCount(boolean)
+         */
+        protected void onCoalesced(int count) {
+            // empty
+        }
+
         protected abstract void animateChildrenIn(int delay, int duration);
 
         protected abstract void animateChildrenOut(int delay, int duration);
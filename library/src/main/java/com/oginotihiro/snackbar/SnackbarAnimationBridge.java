@@ -0,0 +1,140 @@
+package com.oginotihiro.snackbar;
+
+import android.support.v4.view.ViewCompat;
+import android.support.v4.view.ViewPropertyAnimatorListener;
+import android.view.View;
+import android.view.animation.Animation;
+
+/**
+ * Per-view state of the built-in {@link SnackbarAnimator}s: forwards the animation events of
+ * the view to the current {@link SnackbarAnimator.Callback}, and keeps the pre-ICS
+ * {@link Animation}s and the {@link SnackbarSpring} so that they are built once per view.
+ */
+final class SnackbarAnimationBridge implements ViewPropertyAnimatorListener,
+        Animation.AnimationListener, Runnable {
+    private final View mView;
+    private SnackbarAnimator.Callback mCallback;
+    private boolean mCancelled;
+
+    private SnackbarAnimator mInOwner;
+    private Animation mInAnimation;
+    private SnackbarAnimator mOutOwner;
+    private Animation mOutAnimation;
+    private SnackbarSpring mSpring;
+
+    SnackbarAnimationBridge(View view) {
+        mView = view;
+    }
+
+    SnackbarAnimationBridge with(SnackbarAnimator.Callback callback) {
+        mCallback = callback;
+        mCancelled = false;
+        return this;
+    }
+
+    /**
+     * Returns the Animation cached for {@code owner}, or {@code null}.
+     */
+    Animation getAnimation(SnackbarAnimator owner, boolean in) {
+        if (in) {
+            return mInOwner == owner ? mInAnimation : null;
+        }
+        return mOutOwner == owner ? mOutAnimation : null;
+    }
+
+    void putAnimation(SnackbarAnimator owner, boolean in, Animation animation) {
+        if (in) {
+            mInOwner = owner;
+            mInAnimation = animation;
+        } else {
+            mOutOwner = owner;
+            mOutAnimation = animation;
+        }
+    }
+
+    SnackbarSpring getSpring() {
+        if (mSpring == null) {
+            mSpring = new SnackbarSpring(mView, this);
+        }
+        return mSpring;
+    }
+
+    void reset() {
+        if (mSpring != null) {
+            mSpring.cancel();
+        }
+        mCallback = null;
+        mCancelled = false;
+    }
+
+    /**
+     * Stop the current animation where it is and report its end now, e.g. for an entry cut
+     * short by the {@link SnackbarStack}. Cancelling alone would swallow the end, and the
+     * Snackbar would never be told it has entered.
+     */
+    void finish() {
+        ViewCompat.animate(mView).cancel();
+        if (mSpring != null) {
+            mSpring.cancel();
+        }
+        mCancelled = false;
+        dispatchEnd();
+    }
+
+    private void dispatchStart() {
+        if (mCallback != null) {
+            mCallback.onAnimationStart(mView);
+        }
+    }
+
+    private void dispatchEnd() {
+        final SnackbarAnimator.Callback callback = mCallback;
+        if (callback != null) {
+            mCallback = null;
+            callback.onAnimationEnd(mView);
+        }
+    }
+
+    /**
+     * Start and end at once, for animators without any motion.
+     */
+    @Override
+    public void run() {
+        dispatchStart();
+        dispatchEnd();
+    }
+
+    @Override
+    public void onAnimationStart(View view) {
+        dispatchStart();
+    }
+
+    @Override
+    public void onAnimationEnd(View view) {
+        if (mCancelled) {
+            // End of an animation replaced by the current one, not of the current one
+            mCancelled = false;
+            return;
+        }
+        dispatchEnd();
+    }
+
+    @Override
+    public void onAnimationCancel(View view) {
+        mCancelled = true;
+    }
+
+    @Override
+    public void onAnimationStart(Animation animation) {
+        dispatchStart();
+    }
+
+    @Override
+    public void onAnimationEnd(Animation animation) {
+        dispatchEnd();
+    }
+
+    @Override
+    public void onAnimationRepeat(Animation animation) {
+    }
+}
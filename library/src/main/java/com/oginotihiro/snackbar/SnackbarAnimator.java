@@ -0,0 +1,28 @@
+package com.oginotihiro.snackbar;
+
+import android.view.View;
+
+/**
+ * Moves a Snackbar's view in and out of its parent.
+ * <p>
+ * One animator is shared by every Snackbar using it, so implementations must not keep any
+ * per-show state: whatever an animation needs has to live on the view. Built-in animators are
+ * in {@link SnackbarAnimators}.
+ *
+ * @see Snackbar#setAnimator(SnackbarAnimator)
+ */
+public interface SnackbarAnimator {
+    /**
+     * Told when an animation starts and ends. Each call to {@link #animateIn} or
+     * {@link #animateOut} must eventually call {@link #onAnimationEnd}, at most once.
+     */
+    interface Callback {
+        void onAnimationStart(View view);
+
+        void onAnimationEnd(View view);
+    }
+
+    void animateIn(Snackbar.SnackbarLayoutBase view, int duration, Callback callback);
+
+    void animateOut(Snackbar.SnackbarLayoutBase view, int duration, Callback callback);
+}
@@ -0,0 +1,273 @@
+package com.oginotihiro.snackbar;
+
+import android.os.Build;
+import android.support.annotation.AnimRes;
+import android.support.v4.view.ViewCompat;
+import android.support.v4.view.ViewPropertyAnimatorCompat;
+import android.support.v4.view.animation.FastOutSlowInInterpolator;
+import android.view.animation.AlphaAnimation;
+import android.view.animation.Animation;
+import android.view.animation.AnimationUtils;
+import android.view.animation.Interpolator;
+
+/**
+ * Built-in {@link SnackbarAnimator}s. They are stateless and can be shared by any number of
+ * Snackbars.
+ */
+public final class SnackbarAnimators {
+    static final Interpolator FAST_OUT_SLOW_IN = new FastOutSlowInInterpolator();
+
+    private static final SnackbarAnimator[] SLIDES = {
+            new Slide(Snackbar.LEFT_RIGHT, R.anim.oginotihiro_snackbar_left_in,
+                    R.anim.oginotihiro_snackbar_left_out),
+            new Slide(Snackbar.TOP_BOTTOM, R.anim.oginotihiro_snackbar_top_in,
+                    R.anim.oginotihiro_snackbar_top_out),
+            new Slide(Snackbar.RIGHT_LEFT, R.anim.oginotihiro_snackbar_right_in,
+                    R.anim.oginotihiro_snackbar_right_out),
+            new Slide(Snackbar.BOTTOM_TOP, R.anim.oginotihiro_snackbar_bottom_in,
+                    R.anim.oginotihiro_snackbar_bottom_out)
+    };
+
+    private static final SnackbarAnimator[] SPRINGS = {
+            new Spring(Snackbar.LEFT_RIGHT),
+            new Spring(Snackbar.TOP_BOTTOM),
+            new Spring(Snackbar.RIGHT_LEFT),
+            new Spring(Snackbar.BOTTOM_TOP)
+    };
+
+    /**
+     * Fades the view in and out in place.
+     */
+    public static final SnackbarAnimator FADE = new Fade();
+
+    /**
+     * Shows and hides the view without any motion. The callbacks come on the next animation
+     * frame, as with a zero length animation.
+     */
+    public static final SnackbarAnimator NONE = new None(false);
+
+    /**
+     * Shows and hides the view without any motion, calling back synchronously. The cheapest
+     * animator, for low-end devices and tests.
+     */
+    public static final SnackbarAnimator INSTANT = new None(true);
+
+    private SnackbarAnimators() {
+    }
+
+    /**
+     * Returns the animator sliding the view in {@code direction}, the default of a Snackbar.
+     */
+    public static SnackbarAnimator slide(@Snackbar.Direction int direction) {
+        if (direction < 0 || direction >= SLIDES.length) {
+            throw new IllegalArgumentException("Unknown direction: " + direction);
+        }
+        return SLIDES[direction];
+    }
+
+    /**
+     * Returns the animator moving the view in {@code direction} with a spring. A Snackbar
+     * dismissed while entering, e.g. replaced by a new one, turns back from where it is with its
+     * current velocity, and is reported hidden as soon as it is off-screen. The animation
+     * duration is the time the spring takes to settle.
+     * <p>
+     * Below ICS it slides like {@link #slide(int)}.
+     */
+    public static SnackbarAnimator spring(@Snackbar.Direction int direction) {
+        if (direction < 0 || direction >= SPRINGS.length) {
+            throw new IllegalArgumentException("Unknown direction: " + direction);
+        }
+        return SPRINGS[direction];
+    }
+
+    private static SnackbarAnimationBridge bridge(Snackbar.SnackbarLayoutBase view,
+                                                  SnackbarAnimator.Callback callback) {
+        return view.getAnimationBridge().with(callback);
+    }
+
+    private static boolean hasPropertyAnimations() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH;
+    }
+
+    private static void startLegacy(Snackbar.SnackbarLayoutBase view, SnackbarAnimationBridge bridge,
+                                    Animation animation, int duration) {
+        animation.setDuration(duration);
+        animation.setAnimationListener(bridge);
+        view.startAnimation(animation);
+    }
+
+    private static final class Slide implements SnackbarAnimator {
+        private final int mDirection;
+        private final int mInAnimRes;
+        private final int mOutAnimRes;
+
+        Slide(int direction, @AnimRes int inAnimRes, @AnimRes int outAnimRes) {
+            mDirection = direction;
+            mInAnimRes = inAnimRes;
+            mOutAnimRes = outAnimRes;
+        }
+
+        @Override
+        public void animateIn(Snackbar.SnackbarLayoutBase view, int duration, Callback callback) {
+            final SnackbarAnimationBridge bridge = bridge(view, callback);
+            if (hasPropertyAnimations()) {
+                ViewCompat.setAlpha(view, 1f);
+                ViewPropertyAnimatorCompat vpac = ViewCompat.animate(view);
+                if (mDirection == Snackbar.LEFT_RIGHT) {
+                    ViewCompat.setTranslationX(view, -view.getWidth());
+                    vpac.translationX(0f);
+                } else if (mDirection == Snackbar.TOP_BOTTOM) {
+                    ViewCompat.setTranslationY(view, -view.getHeight());
+                    vpac.translationY(0f);
+                } else if (mDirection == Snackbar.RIGHT_LEFT) {
+                    ViewCompat.setTranslationX(view, view.getWidth());
+                    vpac.translationX(0f);
+                } else {
+                    ViewCompat.setTranslationY(view, view.getHeight());
+                    vpac.translationY(0f);
+                }
+                vpac.setInterpolator(FAST_OUT_SLOW_IN).setDuration(duration).setListener(bridge).start();
+            } else {
+                startLegacy(view, bridge, legacyAnimation(view, bridge, true), duration);
+            }
+        }
+
+        @Override
+        public void animateOut(Snackbar.SnackbarLayoutBase view, int duration, Callback callback) {
+            final SnackbarAnimationBridge bridge = bridge(view, callback);
+            if (hasPropertyAnimations()) {
+                ViewPropertyAnimatorCompat vpac = ViewCompat.animate(view);
+                if (mDirection == Snackbar.LEFT_RIGHT) {
+                    vpac.translationX(-view.getWidth());
+                } else if (mDirection == Snackbar.TOP_BOTTOM) {
+                    vpac.translationY(-view.getHeight());
+                } else if (mDirection == Snackbar.RIGHT_LEFT) {
+                    vpac.translationX(view.getWidth());
+                } else {
+                    vpac.translationY(view.getHeight());
+                }
+                vpac.setInterpolator(FAST_OUT_SLOW_IN).setDuration(duration).setListener(bridge).start();
+            } else {
+                startLegacy(view, bridge, legacyAnimation(view, bridge, false), duration);
+            }
+        }
+
+        private Animation legacyAnimation(Snackbar.SnackbarLayoutBase view,
+                                          SnackbarAnimationBridge bridge, boolean in) {
+            Animation animation = bridge.getAnimation(this, in);
+            if (animation == null) {
+                animation = AnimationUtils.loadAnimation(view.getContext(), in ? mInAnimRes : mOutAnimRes);
+                animation.setInterpolator(FAST_OUT_SLOW_IN);
+                bridge.putAnimation(this, in, animation);
+            }
+            return animation;
+        }
+    }
+
+    private static final class Spring implements SnackbarAnimator {
+        private final int mDirection;
+        private final boolean mHorizontal;
+        // -1 when entering from the start of the axis, 1 from its end
+        private final int mSide;
+
+        Spring(int direction) {
+            mDirection = direction;
+            mHorizontal = direction == Snackbar.LEFT_RIGHT || direction == Snackbar.RIGHT_LEFT;
+            mSide = direction == Snackbar.LEFT_RIGHT || direction == Snackbar.TOP_BOTTOM ? -1 : 1;
+        }
+
+        private float offScreen(Snackbar.SnackbarLayoutBase view) {
+            return mSide * (mHorizontal ? view.getWidth() : view.getHeight());
+        }
+
+        @Override
+        public void animateIn(Snackbar.SnackbarLayoutBase view, int duration, Callback callback) {
+            if (!hasPropertyAnimations()) {
+                SLIDES[mDirection].animateIn(view, duration, callback);
+                return;
+            }
+            // Stop whatever another animator left running before taking over
+            ViewCompat.animate(view).cancel();
+            ViewCompat.setAlpha(view, 1f);
+            final SnackbarSpring spring = bridge(view, callback).getSpring();
+            spring.animateTo(mHorizontal, offScreen(view), 0f, duration, false);
+        }
+
+        @Override
+        public void animateOut(Snackbar.SnackbarLayoutBase view, int duration, Callback callback) {
+            if (!hasPropertyAnimations()) {
+                SLIDES[mDirection].animateOut(view, duration, callback);
+                return;
+            }
+            ViewCompat.animate(view).cancel();
+            final SnackbarSpring spring = bridge(view, callback).getSpring();
+            spring.animateTo(mHorizontal, spring.getPosition(mHorizontal), offScreen(view), duration, true);
+        }
+    }
+
+    private static final class Fade implements SnackbarAnimator {
+        @Override
+        public void animateIn(Snackbar.SnackbarLayoutBase view, int duration, Callback callback) {
+            animate(view, duration, callback, true);
+        }
+
+        @Override
+        public void animateOut(Snackbar.SnackbarLayoutBase view, int duration, Callback callback) {
+            animate(view, duration, callback, false);
+        }
+
+        private void animate(Snackbar.SnackbarLayoutBase view, int duration, Callback callback,
+                             boolean in) {
+            final SnackbarAnimationBridge bridge = bridge(view, callback);
+            if (hasPropertyAnimations()) {
+                if (in) {
+                    ViewCompat.setTranslationX(view, 0f);
+                    ViewCompat.setTranslationY(view, 0f);
+                    ViewCompat.setAlpha(view, 0f);
+                }
+                ViewCompat.animate(view).alpha(in ? 1f : 0f).setInterpolator(FAST_OUT_SLOW_IN)
+                        .setDuration(duration).setListener(bridge).start();
+            } else {
+                Animation animation = bridge.getAnimation(this, in);
+                if (animation == null) {
+                    animation = in ? new AlphaAnimation(0f, 1f) : new AlphaAnimation(1f, 0f);
+                    animation.setInterpolator(FAST_OUT_SLOW_IN);
+                    bridge.putAnimation(this, in, animation);
+                }
+                startLegacy(view, bridge, animation, duration);
+            }
+        }
+    }
+
+    private static final class None implements SnackbarAnimator {
+        private final boolean mSynchronous;
+
+        None(boolean synchronous) {
+            mSynchronous = synchronous;
+        }
+
+        @Override
+        public void animateIn(Snackbar.SnackbarLayoutBase view, int duration, Callback callback) {
+            if (hasPropertyAnimations()) {
+                ViewCompat.setTranslationX(view, 0f);
+                ViewCompat.setTranslationY(view, 0f);
+                ViewCompat.setAlpha(view, 1f);
+            }
+            finish(view, callback);
+        }
+
+        @Override
+        public void animateOut(Snackbar.SnackbarLayoutBase view, int duration, Callback callback) {
+            finish(view, callback);
+        }
+
+        private void finish(Snackbar.SnackbarLayoutBase view, Callback callback) {
+            final SnackbarAnimationBridge bridge = bridge(view, callback);
+            if (mSynchronous) {
+                bridge.run();
+            } else {
+                ViewCompat.postOnAnimation(view, bridge);
+            }
+        }
+    }
+}
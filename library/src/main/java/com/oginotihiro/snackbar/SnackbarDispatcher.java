@@ -0,0 +1,263 @@
+package com.oginotihiro.snackbar;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+
+/**
+ * Runs the show, dismiss, update and timeout commands of every {@link Snackbar} on the main thread,
+ * batched once per frame.
+ * <p>
+ * Commands may be posted from any thread. They are drained together from a
+ * {@link Choreographer} frame callback, so transitions happening in the same frame share one
+ * layout pass. Before any view work, a show followed by a dismiss of the same Snackbar in the
+ * batch is collapsed: the view is never added, and the dismiss goes straight to the hidden state.
+ * Below API 16 the batch is drained from a main thread message instead: the frame callback is a
+ * class of its own, never loaded there.
+ * <p>
+ * Commands are recycled through a small pool, so a steady flow of transitions does not allocate.
+ */
+final class SnackbarDispatcher implements Runnable {
+    static final int CMD_SHOW = 0;
+    static final int CMD_DISMISS = 1;
+    static final int CMD_COALESCE = 2;
+    static final int CMD_RUN = 3;
+    static final int CMD_UPDATE = 4;
+
+    private static final int MAX_POOL_SIZE = 16;
+
+    private static class Command {
+        Command next;
+        int what;
+        int arg;
+        Snackbar snackbar;
+        Runnable task;
+    }
+
+    private static class Holder {
+        static final SnackbarDispatcher INSTANCE = new SnackbarDispatcher();
+    }
+
+    static SnackbarDispatcher getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Object mLock = new Object();
+    // Guarded by mLock
+    private Command mFirst;
+    private Command mLast;
+    private Command mPool;
+    private int mPoolSize;
+    private boolean mScheduled;
+    // Only touched on the main thread
+    private final ArrayList<Command> mBatch = new ArrayList<>();
+
+    // Made on the first frame scheduled, from API 16
+    private FrameCallback mFrameCallback;
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private final class FrameCallback implements Choreographer.FrameCallback {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            drain();
+        }
+    }
+
+    private final Runnable mScheduleFrame = new Runnable() {
+        @Override
+        public void run() {
+            scheduleFrame();
+        }
+    };
+
+    private SnackbarDispatcher() {
+    }
+
+    void post(int what, Snackbar snackbar, int arg) {
+        final Command command = obtain();
+        command.what = what;
+        command.snackbar = snackbar;
+        command.arg = arg;
+        enqueue(command);
+    }
+
+    /**
+     * Run {@code task} with the next batch, e.g. a timeout which has expired.
+     */
+    void post(Runnable task) {
+        final Command command = obtain();
+        command.what = CMD_RUN;
+        command.task = task;
+        enqueue(command);
+    }
+
+    /**
+     * Drop the commands of {@code snackbar} which haven't run yet.
+     */
+    void remove(Snackbar snackbar) {
+        Command removed = null;
+        synchronized (mLock) {
+            Command previous = null;
+            Command command = mFirst;
+            while (command != null) {
+                final Command next = command.next;
+                if (command.snackbar == snackbar) {
+                    if (previous == null) {
+                        mFirst = next;
+                    } else {
+                        previous.next = next;
+                    }
+                    if (mLast == command) {
+                        mLast = previous;
+                    }
+                    command.next = removed;
+                    removed = command;
+                } else {
+                    previous = command;
+                }
+                command = next;
+            }
+        }
+        while (removed != null) {
+            final Command next = removed.next;
+            removed.next = null;
+            recycle(removed);
+            removed = next;
+        }
+    }
+
+    private Command obtain() {
+        synchronized (mLock) {
+            final Command command = mPool;
+            if (command != null) {
+                mPool = command.next;
+                command.next = null;
+                mPoolSize--;
+                return command;
+            }
+        }
+        return new Command();
+    }
+
+    private void recycle(Command command) {
+        command.snackbar = null;
+        command.task = null;
+        synchronized (mLock) {
+            if (mPoolSize < MAX_POOL_SIZE) {
+                command.next = mPool;
+                mPool = command;
+                mPoolSize++;
+            }
+        }
+    }
+
+    private void enqueue(Command command) {
+        final boolean schedule;
+        synchronized (mLock) {
+            if (mLast == null) {
+                mFirst = command;
+            } else {
+                mLast.next = command;
+            }
+            mLast = command;
+            schedule = !mScheduled;
+            mScheduled = true;
+        }
+        if (schedule) {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+                mHandler.post(this);
+            } else if (Looper.myLooper() == Looper.getMainLooper()) {
+                scheduleFrame();
+            } else {
+                // The Choreographer has to be reached from the main thread
+                mHandler.post(mScheduleFrame);
+            }
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void scheduleFrame() {
+        if (mFrameCallback == null) {
+            mFrameCallback = new FrameCallback();
+        }
+        Choreographer.getInstance().postFrameCallback(mFrameCallback);
+    }
+
+    @Override
+    public void run() {
+        drain();
+    }
+
+    private void drain() {
+        Command command;
+        synchronized (mLock) {
+            command = mFirst;
+            mFirst = null;
+            mLast = null;
+            // Commands posted from now on need another frame
+            mScheduled = false;
+        }
+        final ArrayList<Command> batch = mBatch;
+        while (command != null) {
+            final Command next = command.next;
+            command.next = null;
+            batch.add(command);
+            command = next;
+        }
+
+        final int size = batch.size();
+        for (int i = 0; i < size; i++) {
+            command = batch.get(i);
+            if (command.what == CMD_SHOW && isDismissedLater(batch, i)) {
+                // Never add the view, the dismiss will find it hidden
+                continue;
+            }
+            execute(command);
+        }
+        for (int i = 0; i < size; i++) {
+            recycle(batch.get(i));
+        }
+        batch.clear();
+    }
+
+    private static boolean isDismissedLater(ArrayList<Command> batch, int index) {
+        final Snackbar snackbar = batch.get(index).snackbar;
+        for (int i = index + 1, size = batch.size(); i < size; i++) {
+            final Command command = batch.get(i);
+            if (command.snackbar == snackbar) {
+                if (command.what == CMD_DISMISS) {
+                    return true;
+                }
+                if (command.what == CMD_SHOW) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void execute(Command command) {
+        switch (command.what) {
+            case CMD_SHOW:
+                command.snackbar.showView();
+                break;
+            case CMD_DISMISS:
+                command.snackbar.hideView(command.arg);
+                break;
+            case CMD_COALESCE:
+                command.snackbar.onCoalesced(command.arg);
+                break;
+            case CMD_UPDATE:
+                command.snackbar.applyUpdate();
+                break;
+            case CMD_RUN:
+                command.task.run();
+                break;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.oginotihiro.snackbar;
+
+/**
+ * Told how smoothly each Snackbar animation ran, measured from vsync frame callbacks while it
+ * was running. Frames drawn while several Snackbars animate are counted for each of them.
+ * Called on the main thread, from API 16.
+ *
+ * @see Snackbar#setFrameListener(SnackbarFrameListener)
+ */
+public interface SnackbarFrameListener {
+    /**
+     * @param entering      Whether it was the entry animation, else the exit one.
+     * @param direction     The direction of the Snackbar.
+     * @param frames        How many frame intervals were measured.
+     * @param droppedFrames How many vsyncs passed without a frame.
+     * @param p50Nanos      Median frame interval.
+     * @param p95Nanos      95th percentile of the frame intervals.
+     * @param maxNanos      Longest frame interval.
+     */
+    void onAnimationFrames(boolean entering, @Snackbar.Direction int direction, int frames,
+                           int droppedFrames, long p50Nanos, long p95Nanos, long maxNanos);
+}
@@ -0,0 +1,115 @@
+package com.oginotihiro.snackbar;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.view.Choreographer;
+import android.view.View;
+import android.view.WindowManager;
+
+import java.util.Arrays;
+
+/**
+ * Records the frame intervals of the main thread while Snackbar animations run, into a ring
+ * of the last {@link #CAPACITY} frames. Each animation opens a window on the ring with
+ * {@link #begin} and gets its statistics reported by {@link #end}. Main thread only, and
+ * inactive below API 16, where its frame callback, a class of its own, is never loaded.
+ */
+final class SnackbarFrameMonitor {
+    private static final int CAPACITY = 256;
+    private static final long DEFAULT_FRAME_INTERVAL_NANOS = 1000000000L / 60;
+
+    static volatile SnackbarFrameListener sListener;
+
+    private static class Holder {
+        static final SnackbarFrameMonitor INSTANCE = new SnackbarFrameMonitor();
+    }
+
+    static SnackbarFrameMonitor getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private final long[] mIntervals = new long[CAPACITY];
+    private final long[] mSorted = new long[CAPACITY];
+    private long mFrameCount;
+    private long mLastFrameNanos;
+    private long mFrameIntervalNanos;
+    private int mActive;
+    // Made on the first window opened, from API 16
+    private FrameCallback mFrameCallback;
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private final class FrameCallback implements Choreographer.FrameCallback {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (mLastFrameNanos != 0) {
+                mIntervals[(int) (mFrameCount % CAPACITY)] = frameTimeNanos - mLastFrameNanos;
+                mFrameCount++;
+            }
+            mLastFrameNanos = frameTimeNanos;
+            if (mActive > 0) {
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        }
+    }
+
+    private SnackbarFrameMonitor() {
+    }
+
+    /**
+     * Start measuring for an animation of {@code view}.
+     *
+     * @return The window to pass to {@link #end}, or -1 if nothing is measured.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    long begin(View view) {
+        if (sListener == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            return -1;
+        }
+        if (mFrameIntervalNanos == 0) {
+            mFrameIntervalNanos = frameIntervalOf(view.getContext());
+        }
+        if (mFrameCallback == null) {
+            mFrameCallback = new FrameCallback();
+        }
+        if (mActive++ == 0) {
+            mLastFrameNanos = 0;
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+        }
+        return mFrameCount;
+    }
+
+    private static long frameIntervalOf(Context context) {
+        final WindowManager wm = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        final float refreshRate = wm != null ? wm.getDefaultDisplay().getRefreshRate() : 0f;
+        return refreshRate >= 1f ? (long) (1000000000L / refreshRate) : DEFAULT_FRAME_INTERVAL_NANOS;
+    }
+
+    /**
+     * Stop measuring for the animation that got {@code window} from {@link #begin}, and report it.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    void end(long window, boolean entering, int direction) {
+        if (window < 0) {
+            return;
+        }
+        if (--mActive == 0) {
+            Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+        }
+        final SnackbarFrameListener listener = sListener;
+        final int count = (int) Math.min(mFrameCount - window, CAPACITY);
+        if (listener == null || count <= 0) {
+            return;
+        }
+
+        int dropped = 0;
+        for (int i = 0; i < count; i++) {
+            final long interval = mIntervals[(int) ((mFrameCount - count + i) % CAPACITY)];
+            mSorted[i] = interval;
+            dropped += Math.max(0, Math.round((double) interval / mFrameIntervalNanos) - 1);
+        }
+        Arrays.sort(mSorted, 0, count);
+        listener.onAnimationFrames(entering, direction, count, dropped,
+                mSorted[(count - 1) / 2], mSorted[(count - 1) * 95 / 100], mSorted[count - 1]);
+    }
+}
@@ -0,0 +1,91 @@
+package com.oginotihiro.snackbar;
+
+/**
+ * Histogram of durations in milliseconds, or of any other non-negative value, in fixed buckets
+ * growing roughly geometrically up to 10 seconds. All the memory is allocated up front, so
+ * recording never allocates. Thread safe.
+ */
+public final class SnackbarHistogram {
+    private static final long[] BOUNDS = {
+            1, 2, 3, 4, 5, 6, 8, 10, 12, 16, 20, 25, 32, 40, 50, 64, 80, 100, 125, 160, 200, 250,
+            320, 400, 500, 640, 800, 1000, 1250, 1600, 2000, 2500, 3200, 4000, 5000, 6400, 8000,
+            10000, Long.MAX_VALUE
+    };
+
+    private final long[] mCounts = new long[BOUNDS.length];
+    private long mCount;
+    private long mSum;
+    private long mMax;
+
+    /**
+     * Record one value. Negative values, standing for "not measured", are ignored.
+     */
+    public synchronized void record(long value) {
+        if (value < 0) {
+            return;
+        }
+        mCounts[bucketOf(value)]++;
+        mCount++;
+        mSum += value;
+        if (value > mMax) {
+            mMax = value;
+        }
+    }
+
+    private static int bucketOf(long value) {
+        int low = 0;
+        int high = BOUNDS.length - 1;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (value < BOUNDS[mid]) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    public synchronized long getCount() {
+        return mCount;
+    }
+
+    public synchronized long getMax() {
+        return mMax;
+    }
+
+    public synchronized double getMean() {
+        return mCount == 0 ? 0 : (double) mSum / mCount;
+    }
+
+    /**
+     * Returns an upper bound of the given percentile, exact to the bucket, and never more than
+     * the maximum.
+     *
+     * @param percentile Between 0 and 100.
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (mCount == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(mCount * percentile / 100d));
+        long seen = 0;
+        for (int i = 0; i < mCounts.length; i++) {
+            seen += mCounts[i];
+            if (seen >= rank) {
+                // Bounds are exclusive
+                return Math.min(BOUNDS[i] - 1, mMax);
+            }
+        }
+        return mMax;
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < mCounts.length; i++) {
+            mCounts[i] = 0;
+        }
+        mCount = 0;
+        mSum = 0;
+        mMax = 0;
+    }
+}
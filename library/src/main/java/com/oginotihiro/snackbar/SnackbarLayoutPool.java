@@ -0,0 +1,201 @@
+package com.oginotihiro.snackbar;
+
+import android.support.annotation.NonNull;
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.widget.FrameLayout;
+
+import java.util.ArrayList;
+
+/**
+ * Keeps hidden {@link Snackbar.SnackbarLayoutBase}s of a window so they can be shown again
+ * without being inflated.
+ * <p>
+ * There is one pool per window, stored on its root view, so it never outlives the
+ * {@link android.content.Context} the layouts were inflated with. Layouts are keyed by their
+ * class and their gravity. Pools must only be used from the main thread.
+ */
+public final class SnackbarLayoutPool {
+    private static final int DEFAULT_MAX_SIZE = 2;
+
+    private static class Entry {
+        final Class<? extends Snackbar.SnackbarLayoutBase> layoutClass;
+        final int gravity;
+        final ArrayList<Snackbar.SnackbarLayoutBase> layouts = new ArrayList<>(DEFAULT_MAX_SIZE);
+
+        Entry(Class<? extends Snackbar.SnackbarLayoutBase> layoutClass, int gravity) {
+            this.layoutClass = layoutClass;
+            this.gravity = gravity;
+        }
+    }
+
+    // Frames a handed off layout waits on screen for the next Snackbar
+    private static final int PARK_FRAMES = 3;
+
+    private final ArrayList<Entry> mEntries = new ArrayList<>();
+    private Snackbar.SnackbarLayoutBase mParked;
+    private int mParkedDirection;
+    private int mParkedFrames;
+    private final Runnable mParkExpiry = new Runnable() {
+        @Override
+        public void run() {
+            if (mParked == null) {
+                return;
+            }
+            if (++mParkedFrames < PARK_FRAMES) {
+                ViewCompat.postOnAnimation(mParked, this);
+            } else {
+                expireParked();
+            }
+        }
+    };
+    private int mMaxSize = DEFAULT_MAX_SIZE;
+    private long mHitCount;
+    private long mMissCount;
+
+    private SnackbarLayoutPool() {
+    }
+
+    /**
+     * Returns the pool of the window {@code view} belongs to, creating it if needed.
+     */
+    @NonNull
+    public static SnackbarLayoutPool from(@NonNull View view) {
+        final View root = view.getRootView();
+        SnackbarLayoutPool pool = (SnackbarLayoutPool) root.getTag(R.id.snackbar_layout_pool);
+        if (pool == null) {
+            pool = new SnackbarLayoutPool();
+            root.setTag(R.id.snackbar_layout_pool, pool);
+        }
+        return pool;
+    }
+
+    /**
+     * Take a recycled layout out of the pool.
+     *
+     * @return The layout, or {@code null} if there's none and a new one has to be made.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Snackbar.SnackbarLayoutBase> T acquire(@NonNull Class<T> layoutClass, int gravity) {
+        final Entry entry = findEntry(layoutClass, gravity);
+        if (entry == null || entry.layouts.isEmpty()) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        return (T) entry.layouts.remove(entry.layouts.size() - 1);
+    }
+
+    /**
+     * Give back a layout which has been hidden. It is reset through
+     * {@link Snackbar.SnackbarLayoutBase#onRecycled()}, and dropped if the pool is full or it is
+     * still attached.
+     */
+    public void release(@NonNull Snackbar.SnackbarLayoutBase layout) {
+        if (layout.getParent() != null) {
+            return;
+        }
+        final int gravity = gravityOf(layout);
+        Entry entry = findEntry(layout.getClass(), gravity);
+        if (entry == null) {
+            entry = new Entry(layout.getClass(), gravity);
+            mEntries.add(entry);
+        }
+        if (entry.layouts.size() < mMaxSize && !entry.layouts.contains(layout)) {
+            layout.recycle();
+            entry.layouts.add(layout);
+        }
+    }
+
+    /**
+     * Leave a layout on screen for the next Snackbar of the same direction to take over. If none
+     * does within a few frames, the layout is removed and released.
+     */
+    void park(Snackbar.SnackbarLayoutBase layout, int direction) {
+        if (mParked != null) {
+            expireParked();
+        }
+        mParked = layout;
+        mParkedDirection = direction;
+        mParkedFrames = 0;
+        ViewCompat.postOnAnimation(layout, mParkExpiry);
+    }
+
+    /**
+     * Take the parked layout if it's in {@code parent} and matches.
+     *
+     * @return The layout, still attached, or {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    <T extends Snackbar.SnackbarLayoutBase> T adopt(ViewGroup parent, Class<T> layoutClass, int direction) {
+        final Snackbar.SnackbarLayoutBase parked = mParked;
+        if (parked == null || parked.getClass() != layoutClass || parked.getParent() != parent
+                || mParkedDirection != direction) {
+            return null;
+        }
+        mParked = null;
+        mHitCount++;
+        return (T) parked;
+    }
+
+    private void expireParked() {
+        final Snackbar.SnackbarLayoutBase parked = mParked;
+        mParked = null;
+        final ViewParent parent = parked.getParent();
+        if (parent instanceof ViewGroup) {
+            ((ViewGroup) parent).removeView(parked);
+        }
+        release(parked);
+    }
+
+    /**
+     * Set how many layouts are kept per class and gravity. Defaults to 2.
+     */
+    public void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must be >= 0");
+        }
+        mMaxSize = maxSize;
+        for (Entry entry : mEntries) {
+            while (entry.layouts.size() > maxSize) {
+                entry.layouts.remove(entry.layouts.size() - 1);
+            }
+        }
+    }
+
+    public int getMaxSize() {
+        return mMaxSize;
+    }
+
+    public long getHitCount() {
+        return mHitCount;
+    }
+
+    public long getMissCount() {
+        return mMissCount;
+    }
+
+    public void clear() {
+        if (mParked != null) {
+            expireParked();
+        }
+        mEntries.clear();
+    }
+
+    private Entry findEntry(Class<?> layoutClass, int gravity) {
+        for (int i = 0, size = mEntries.size(); i < size; i++) {
+            final Entry entry = mEntries.get(i);
+            if (entry.layoutClass == layoutClass && entry.gravity == gravity) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static int gravityOf(View layout) {
+        final ViewGroup.LayoutParams lp = layout.getLayoutParams();
+        return lp instanceof FrameLayout.LayoutParams ? ((FrameLayout.LayoutParams) lp).gravity : 0;
+    }
+}
@@ -0,0 +1,95 @@
+package com.oginotihiro.snackbar;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.app.Application;
+import android.os.Build;
+import android.os.Bundle;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.WeakHashMap;
+
+/**
+ * Releases the {@link Snackbar}s bound to an {@link Activity} when it is destroyed.
+ * <p>
+ * Registered once with the {@link Application}. Activities and Snackbars are only weakly held,
+ * so binding never keeps either alive. Main thread only.
+ *
+ * @see Snackbar#bindTo(Activity)
+ */
+@TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+final class SnackbarLifecycle implements Application.ActivityLifecycleCallbacks {
+    private static SnackbarLifecycle sInstance;
+
+    private final WeakHashMap<Activity, ArrayList<WeakReference<Snackbar>>> mBound =
+            new WeakHashMap<>();
+
+    private SnackbarLifecycle() {
+    }
+
+    static void bind(Activity host, Snackbar snackbar) {
+        if (sInstance == null) {
+            sInstance = new SnackbarLifecycle();
+            host.getApplication().registerActivityLifecycleCallbacks(sInstance);
+        }
+        sInstance.add(host, snackbar);
+    }
+
+    private void add(Activity host, Snackbar snackbar) {
+        ArrayList<WeakReference<Snackbar>> snackbars = mBound.get(host);
+        if (snackbars == null) {
+            snackbars = new ArrayList<>(2);
+            mBound.put(host, snackbars);
+        }
+        for (int i = snackbars.size() - 1; i >= 0; i--) {
+            final Snackbar bound = snackbars.get(i).get();
+            if (bound == snackbar) {
+                return;
+            }
+            if (bound == null) {
+                // Collected since, nothing left to release
+                snackbars.remove(i);
+            }
+        }
+        snackbars.add(new WeakReference<>(snackbar));
+    }
+
+    @Override
+    public void onActivityDestroyed(Activity activity) {
+        final ArrayList<WeakReference<Snackbar>> snackbars = mBound.remove(activity);
+        if (snackbars == null) {
+            return;
+        }
+        for (int i = 0, size = snackbars.size(); i < size; i++) {
+            final Snackbar snackbar = snackbars.get(i).get();
+            if (snackbar != null) {
+                snackbar.release();
+            }
+        }
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityStarted(Activity activity) {
+    }
+
+    @Override
+    public void onActivityResumed(Activity activity) {
+    }
+
+    @Override
+    public void onActivityPaused(Activity activity) {
+    }
+
+    @Override
+    public void onActivityStopped(Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+    }
+}
@@ -15,109 +15,561 @@
  */
 package com.oginotihiro.snackbar;
 
-import android.os.Handler;
-import android.os.Looper;
-import android.os.Message;
-
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * Manages {@link Snackbar}s.
+ * <p>
+ * Each scope has its own manager, with its own queue, timeouts and lock, so Snackbars of
+ * different scopes are shown independently. Snackbars without a scope share the global manager.
+ * Scoped managers are dropped once their scope is no longer referenced.
+ * <p>
+ * Transitions run under the manager's lock, but the state of each record is also published
+ * through a volatile field changed with compare-and-set, and every callback points at its latest
+ * record. {@link #isCurrent} and {@link #isCurrentOrNext} are therefore a couple of volatile
+ * reads, without taking the lock, and a record can never be shown or dismissed twice.
  */
 class SnackbarManager {
-    private static final int MSG_TIMEOUT = 0;
-
     private static final int SHORT_DURATION_MS = 1500;
     private static final int LONG_DURATION_MS = 2750;
 
-    private static SnackbarManager sSnackbarManager;
+    private static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+    private static class GlobalHolder {
+        static final SnackbarManager INSTANCE = new SnackbarManager(null);
+    }
+
+    private static final WeakHashMap<Object, SnackbarManager> sScopedManagers = new WeakHashMap<>();
+
+    // Shared by every scope, see Snackbar#setMetricsListener
+    static volatile SnackbarMetricsListener sMetricsListener;
 
+    /**
+     * Returns the global manager, used by Snackbars without a scope.
+     */
     static SnackbarManager getInstance() {
-        if (sSnackbarManager == null) {
-            sSnackbarManager = new SnackbarManager();
+        return GlobalHolder.INSTANCE;
+    }
+
+    /**
+     * Returns the manager of {@code scope}, creating it with the settings of the global manager
+     * if needed. A {@code null} scope returns the global manager.
+     */
+    static SnackbarManager forScope(Object scope) {
+        if (scope == null) {
+            return getInstance();
+        }
+        synchronized (sScopedManagers) {
+            SnackbarManager manager = sScopedManagers.get(scope);
+            if (manager == null) {
+                manager = new SnackbarManager(getInstance());
+                sScopedManagers.put(scope, manager);
+            }
+            return manager;
+        }
+    }
+
+    /**
+     * Returns the global manager followed by every live scoped manager.
+     */
+    static List<SnackbarManager> getAll() {
+        synchronized (sScopedManagers) {
+            List<SnackbarManager> managers = new ArrayList<>(sScopedManagers.size() + 1);
+            managers.add(getInstance());
+            managers.addAll(sScopedManagers.values());
+            return managers;
         }
-        return sSnackbarManager;
     }
 
     private final Object mLock;
-    private final Handler mHandler;
+    private SnackbarScheduler mScheduler;
 
-    private SnackbarRecord mCurrentSnackbar;
-    private SnackbarRecord mNextSnackbar;
+    // Snackbars on screen, oldest first. Only one unless stacked with setMaxVisible()
+    private SnackbarRecord[] mShown = new SnackbarRecord[1];
+    private int mShownCount;
+    private int mMaxVisible = 1;
+    private final SnackbarQueue mQueue;
+    private final HashMap<String, TokenBucket> mChannels = new HashMap<>();
 
-    private SnackbarManager() {
+    private SnackbarManager(SnackbarManager template) {
+        this(template, template != null
+                ? template.getScheduler() : MainLooperScheduler.getInstance());
+    }
+
+    /**
+     * @param template The manager to copy the settings of, or {@code null} for the defaults.
+     */
+    SnackbarManager(SnackbarManager template, SnackbarScheduler scheduler) {
         mLock = new Object();
-        mHandler = new Handler(Looper.getMainLooper(), new Handler.Callback() {
-            @Override
-            public boolean handleMessage(Message message) {
-                switch (message.what) {
-                    case MSG_TIMEOUT:
-                        handleTimeout((SnackbarRecord) message.obj);
-                        return true;
+        mScheduler = scheduler;
+        if (template == null) {
+            mQueue = new SnackbarQueue(DEFAULT_QUEUE_CAPACITY, Snackbar.OVERFLOW_DROP_OLDEST);
+        } else {
+            synchronized (template.mLock) {
+                mQueue = new SnackbarQueue(template.mQueue.getCapacity(),
+                        template.mQueue.getOverflowPolicy());
+                mMaxVisible = template.mMaxVisible;
+                mShown = new SnackbarRecord[mMaxVisible];
+                for (TokenBucket bucket : template.mChannels.values()) {
+                    putChannelLocked(bucket.channel, bucket.permits, bucket.windowMs, bucket.policy);
                 }
-                return false;
             }
-        });
+        }
     }
 
-    interface Callback {
-        void show();
-        void dismiss(int event);
+    static abstract class Callback {
+        /**
+         * The latest record made for this callback, written under the lock of its manager.
+         */
+        volatile SnackbarRecord record;
+
+        abstract void show();
+
+        abstract void dismiss(int event);
+
+        abstract void coalesce(int count);
     }
 
     public void show(int duration, Callback callback) {
+        show(duration, Snackbar.PRIORITY_NORMAL, null, null, callback);
+    }
+
+    /**
+     * @param coalesceKey If not null, and a record with an equal key is current or queued, the
+     *                    show is merged into that record instead of queueing a new one, and
+     *                    the callback dismissed with
+     *                    {@link Snackbar.Callback#DISMISS_EVENT_CONSECUTIVE}.
+     * @param channel     If not null and rate limited, the show has to take a token from the
+     *                    channel before being queued.
+     */
+    public void show(int duration, int priority, Object coalesceKey, String channel,
+                     Callback callback) {
         synchronized (mLock) {
-            if (isCurrentSnackbarLocked(callback)) {
+            final SnackbarRecord shown = findShownLocked(callback);
+            if (shown != null) {
                 // Means that the callback is already in the queue. We'll just update the duration
-                mCurrentSnackbar.duration = duration;
+                shown.duration = duration;
+                shown.priority = priority;
 
                 // If this is the Snackbar currently being shown, call re-schedule it's timeout
-                mHandler.removeCallbacksAndMessages(mCurrentSnackbar);
-                scheduleTimeoutLocked(mCurrentSnackbar);
+                scheduleTimeoutLocked(shown);
+                return;
+            }
+
+            SnackbarRecord record = callback.record;
+            final int state = record != null ? record.state : SnackbarRecord.STATE_DONE;
+            if (state == SnackbarRecord.STATE_QUEUED) {
+                // We'll just update the duration and the priority. Checked before coalescing,
+                // the record would otherwise be merged into itself
+                record.duration = duration;
+                mQueue.updatePriority(record, priority);
+            } else if (state == SnackbarRecord.STATE_PENDING) {
+                // Still waiting for its channel, it'll be queued with the new values
+                record.duration = duration;
+                record.priority = priority;
                 return;
-            } else if (isNextSnackbarLocked(callback)) {
-                // We'll just update the duration
-                mNextSnackbar.duration = duration;
             } else {
+                if (coalesceKey != null && coalesceLocked(coalesceKey, duration)) {
+                    // Never shown on its own, replaced by the record it was merged into
+                    callback.dismiss(Snackbar.Callback.DISMISS_EVENT_CONSECUTIVE);
+                    return;
+                }
                 // Else, we need to create a new record and queue it
-                mNextSnackbar = new SnackbarRecord(duration, callback);
+                record = new SnackbarRecord(duration, priority, coalesceKey, channel, callback);
+                record.manager = this;
+                callback.record = record;
+                if (!admitLocked(record)) {
+                    return;
+                }
+                if (offerLocked(record) == record) {
+                    // The queue is full and the policy rejected this one
+                    return;
+                }
             }
+            showOrWaitLocked();
+        }
+    }
 
-            if (mCurrentSnackbar != null && cancelSnackbarLocked(mCurrentSnackbar,
-                    Snackbar.Callback.DISMISS_EVENT_CONSECUTIVE)) {
-                // If we currently have a Snackbar, try and cancel it and wait in line
+    /**
+     * Queue the record, marking whichever record the capacity forced out as done.
+     */
+    private SnackbarRecord offerLocked(SnackbarRecord record) {
+        final SnackbarRecord dropped = mQueue.offer(record);
+        if (dropped != null) {
+            dropped.state = SnackbarRecord.STATE_DONE;
+            dropped.endTrace();
+        }
+        final SnackbarMetricsListener metrics = sMetricsListener;
+        if (metrics != null && dropped != record) {
+            metrics.onQueueDepth(mQueue.size());
+        }
+        return dropped;
+    }
+
+    /**
+     * Show the head of the queue if a slot is free, or make room for it if it outranks one of
+     * the shown Snackbars.
+     */
+    private void showOrWaitLocked() {
+        final SnackbarRecord next = mQueue.peek();
+        if (next == null) {
+            return;
+        }
+        if (mShownCount >= mMaxVisible) {
+            SnackbarRecord lowest = null;
+            for (int i = 0; i < mShownCount; i++) {
+                final SnackbarRecord r = mShown[i];
+                if (r.state == SnackbarRecord.STATE_DISMISSING) {
+                    // A slot is already on its way out
+                    return;
+                }
+                if (lowest == null || r.priority < lowest.priority) {
+                    lowest = r;
+                }
+            }
+            if (next.priority < lowest.priority) {
+                // Every shown Snackbar outranks everything queued
                 return;
-            } else {
-                // Clear out the current snackbar
-                mCurrentSnackbar = null;
-                // Otherwise, just show it now
-                showNextSnackbarLocked();
             }
+            if (cancelSnackbarLocked(lowest, Snackbar.Callback.DISMISS_EVENT_CONSECUTIVE)) {
+                // Try and cancel it and wait in line
+                return;
+            }
+            // The callback doesn't exist any more, just free its slot
+            removeShownLocked(lowest);
+            lowest.state = SnackbarRecord.STATE_DONE;
+            lowest.endTrace();
+        }
+        // Otherwise, just show it now
+        showNextSnackbarLocked();
+    }
+
+    private boolean coalesceLocked(Object coalesceKey, int duration) {
+        SnackbarRecord record = null;
+        for (int i = 0; i < mShownCount; i++) {
+            if (mShown[i].state == SnackbarRecord.STATE_SHOWN
+                    && coalesceKey.equals(mShown[i].coalesceKey)) {
+                record = mShown[i];
+                break;
+            }
+        }
+        if (record != null) {
+            // Extend the time on screen of the one being shown
+            record.duration = duration;
+            if (notifyCoalescedLocked(record)) {
+                scheduleTimeoutLocked(record);
+                return true;
+            }
+            return false;
+        }
+        record = mQueue.findByKey(coalesceKey);
+        if (record == null) {
+            for (TokenBucket bucket : mChannels.values()) {
+                for (SnackbarRecord pending : bucket.pending) {
+                    if (coalesceKey.equals(pending.coalesceKey)) {
+                        record = pending;
+                        break;
+                    }
+                }
+            }
+        }
+        if (record != null) {
+            record.duration = duration;
+            return notifyCoalescedLocked(record);
+        }
+        return false;
+    }
+
+    /**
+     * Apply the rate limit of the record's channel.
+     *
+     * @return whether the record may be queued now.
+     */
+    private boolean admitLocked(SnackbarRecord record) {
+        final TokenBucket bucket = record.channel != null ? mChannels.get(record.channel) : null;
+        if (bucket == null) {
+            return true;
+        }
+        if (bucket.pending.isEmpty() && bucket.tryAcquire(mScheduler.now())) {
+            bucket.admittedCount++;
+            return true;
+        }
+        if (bucket.policy == Snackbar.RATE_LIMIT_DELAY && !bucket.isPendingFull()) {
+            record.state = SnackbarRecord.STATE_PENDING;
+            bucket.pending.addLast(record);
+            scheduleRateLimitLocked(bucket);
+        } else {
+            // Merged or not, it won't reach the screen on its own
+            final boolean merged = bucket.policy == Snackbar.RATE_LIMIT_COALESCE
+                    && coalesceIntoChannelLocked(record);
+            record.state = SnackbarRecord.STATE_DONE;
+            record.endTrace();
+            bucket.rejectedCount++;
+            if (merged) {
+                final Callback callback = record.callback.get();
+                if (callback != null) {
+                    callback.dismiss(Snackbar.Callback.DISMISS_EVENT_CONSECUTIVE);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Merge the record into the latest admitted one of the same channel, if any.
+     */
+    private boolean coalesceIntoChannelLocked(SnackbarRecord record) {
+        SnackbarRecord target = mQueue.findNewestInChannel(record.channel);
+        boolean shown = false;
+        for (int i = mShownCount - 1; target == null && i >= 0; i--) {
+            if (mShown[i].state == SnackbarRecord.STATE_SHOWN
+                    && record.channel.equals(mShown[i].channel)) {
+                target = mShown[i];
+                shown = true;
+            }
+        }
+        if (target == null) {
+            return false;
+        }
+        target.duration = record.duration;
+        if (!notifyCoalescedLocked(target)) {
+            return false;
+        }
+        if (shown) {
+            scheduleTimeoutLocked(target);
         }
+        return true;
+    }
+
+    /**
+     * Move the pending timeouts and rate limit releases to {@code scheduler}, keeping the time
+     * they have left.
+     */
+    public void setScheduler(SnackbarScheduler scheduler) {
+        synchronized (mLock) {
+            final SnackbarScheduler old = mScheduler;
+            if (scheduler == old) {
+                return;
+            }
+            final long oldNow = old.now();
+            final long now = scheduler.now();
+            mScheduler = scheduler;
+            for (int i = 0; i < mShownCount; i++) {
+                final SnackbarRecord r = mShown[i];
+                old.cancel(r);
+                if (r.timeoutAt != Long.MAX_VALUE) {
+                    final long delay = Math.max(0, r.timeoutAt - oldNow);
+                    r.timeoutAt = now + delay;
+                    scheduler.postDelayed(r, delay);
+                }
+            }
+            for (TokenBucket bucket : mChannels.values()) {
+                old.cancel(bucket.releaseTask);
+                bucket.rebase(now - oldNow);
+                if (!bucket.pending.isEmpty()) {
+                    scheduleRateLimitLocked(bucket);
+                }
+            }
+        }
+    }
+
+    public SnackbarScheduler getScheduler() {
+        synchronized (mLock) {
+            return mScheduler;
+        }
+    }
+
+    /**
+     * Limit how many Snackbars of a channel can be queued per time window.
+     */
+    public void setChannelRateLimit(String channel, int permits, long windowMs, int policy) {
+        synchronized (mLock) {
+            TokenBucket old = putChannelLocked(channel, permits, windowMs, policy);
+            if (old != null) {
+                releasePendingLocked(old);
+            }
+        }
+    }
+
+    private TokenBucket putChannelLocked(String channel, int permits, long windowMs, int policy) {
+        final TokenBucket bucket = new TokenBucket(channel, permits, windowMs, policy, mScheduler.now());
+        bucket.releaseTask = new Runnable() {
+            @Override
+            public void run() {
+                handleRateLimit(bucket);
+            }
+        };
+        return mChannels.put(channel, bucket);
+    }
+
+    public void clearChannelRateLimit(String channel) {
+        synchronized (mLock) {
+            TokenBucket old = mChannels.remove(channel);
+            if (old != null) {
+                releasePendingLocked(old);
+            }
+        }
+    }
+
+    private void releasePendingLocked(TokenBucket bucket) {
+        mScheduler.cancel(bucket.releaseTask);
+        if (bucket.pending.isEmpty()) {
+            return;
+        }
+        SnackbarRecord record;
+        while ((record = bucket.pending.pollFirst()) != null) {
+            record.state = SnackbarRecord.STATE_QUEUED;
+            offerLocked(record);
+        }
+        showOrWaitLocked();
+    }
+
+    public long getChannelAdmittedCount(String channel) {
+        synchronized (mLock) {
+            TokenBucket bucket = mChannels.get(channel);
+            return bucket != null ? bucket.admittedCount : 0;
+        }
+    }
+
+    public long getChannelRejectedCount(String channel) {
+        synchronized (mLock) {
+            TokenBucket bucket = mChannels.get(channel);
+            return bucket != null ? bucket.rejectedCount : 0;
+        }
+    }
+
+    private boolean notifyCoalescedLocked(SnackbarRecord record) {
+        final Callback callback = record.callback.get();
+        if (callback != null) {
+            callback.coalesce(++record.count);
+            return true;
+        }
+        return false;
     }
 
     public void dismiss(Callback callback, int event) {
         synchronized (mLock) {
-            if (isCurrentSnackbarLocked(callback)) {
-                cancelSnackbarLocked(mCurrentSnackbar, event);
-            } else if (isNextSnackbarLocked(callback)) {
-                cancelSnackbarLocked(mNextSnackbar, event);
+            final SnackbarRecord record = callback.record;
+            if (record == null) {
+                return;
+            }
+            final int state = record.state;
+            if (state == SnackbarRecord.STATE_SHOWN) {
+                cancelSnackbarLocked(record, event);
+            } else if (state == SnackbarRecord.STATE_QUEUED
+                    || state == SnackbarRecord.STATE_PENDING) {
+                if (state == SnackbarRecord.STATE_QUEUED) {
+                    mQueue.remove(record);
+                } else {
+                    mChannels.get(record.channel).pending.remove(record);
+                }
+                if (record.transition(state, SnackbarRecord.STATE_DONE)) {
+                    record.endTrace();
+                    callback.dismiss(event);
+                }
             }
         }
     }
 
+    /**
+     * Forget the record of {@code callback} at once, without calling it back, e.g. when its
+     * host is destroyed. A shown record frees its slot for the next one.
+     */
+    public void release(Callback callback) {
+        synchronized (mLock) {
+            final SnackbarRecord record = callback.record;
+            if (record == null) {
+                return;
+            }
+            callback.record = null;
+            final int state = record.state;
+            if (state == SnackbarRecord.STATE_QUEUED) {
+                mQueue.remove(record);
+            } else if (state == SnackbarRecord.STATE_PENDING) {
+                mChannels.get(record.channel).pending.remove(record);
+            } else if (state == SnackbarRecord.STATE_DONE) {
+                return;
+            }
+            if (!record.transition(state, SnackbarRecord.STATE_DONE)) {
+                return;
+            }
+            record.endTrace();
+            if (state == SnackbarRecord.STATE_SHOWN || state == SnackbarRecord.STATE_DISMISSING) {
+                cancelTimeoutLocked(record);
+                removeShownLocked(record);
+                showNextSnackbarLocked();
+            }
+        }
+    }
+
+    /**
+     * Set how many Snackbars may wait in line and what happens when one more is shown.
+     */
+    public void setQueueCapacity(int capacity, int overflowPolicy) {
+        synchronized (mLock) {
+            mQueue.setCapacity(capacity, overflowPolicy);
+        }
+    }
+
+    /**
+     * Returns how many queued Snackbars have been dropped because the queue was full.
+     */
+    public long getDroppedCount() {
+        synchronized (mLock) {
+            return mQueue.getDroppedCount();
+        }
+    }
+
+    /**
+     * Set how many Snackbars may be shown at the same time, stacked on top of each other.
+     */
+    public void setMaxVisible(int maxVisible) {
+        if (maxVisible <= 0) {
+            throw new IllegalArgumentException("maxVisible must be > 0");
+        }
+        synchronized (mLock) {
+            if (maxVisible > mShown.length) {
+                SnackbarRecord[] shown = new SnackbarRecord[maxVisible];
+                System.arraycopy(mShown, 0, shown, 0, mShownCount);
+                mShown = shown;
+            }
+            // Extra Snackbars already shown leave on their own, slots are just not refilled
+            mMaxVisible = maxVisible;
+            showNextSnackbarLocked();
+        }
+    }
+
+    public int getMaxVisible() {
+        synchronized (mLock) {
+            return mMaxVisible;
+        }
+    }
+
+    public int getQueueSize() {
+        synchronized (mLock) {
+            return mQueue.size();
+        }
+    }
+
     /**
      * Should be called when a Snackbar is no longer displayed. This is after any exit
      * animation has finished.
      */
     public void onDismissed(Callback callback) {
         synchronized (mLock) {
-            if (isCurrentSnackbarLocked(callback)) {
+            final SnackbarRecord shown = findShownLocked(callback);
+            if (shown != null && (shown.transition(SnackbarRecord.STATE_SHOWN, SnackbarRecord.STATE_DONE)
+                    || shown.transition(SnackbarRecord.STATE_DISMISSING, SnackbarRecord.STATE_DONE))) {
                 // If the callback is from a Snackbar currently show, remove it and show a new one
-                mCurrentSnackbar = null;
-                if (mNextSnackbar != null) {
-                    showNextSnackbarLocked();
-                }
+                shown.endTrace();
+                cancelTimeoutLocked(shown);
+                removeShownLocked(shown);
+                showNextSnackbarLocked();
             }
         }
     }
@@ -127,84 +579,171 @@ class SnackbarManager {
      */
     public void onShown(Callback callback) {
         synchronized (mLock) {
-            if (isCurrentSnackbarLocked(callback)) {
-                scheduleTimeoutLocked(mCurrentSnackbar);
+            final SnackbarRecord shown = findShownLocked(callback);
+            if (shown != null) {
+                scheduleTimeoutLocked(shown);
             }
         }
     }
 
     public void cancelTimeout(Callback callback) {
         synchronized (mLock) {
-            if (isCurrentSnackbarLocked(callback)) {
-                mHandler.removeCallbacksAndMessages(mCurrentSnackbar);
+            final SnackbarRecord shown = findShownLocked(callback);
+            if (shown != null) {
+                cancelTimeoutLocked(shown);
             }
         }
     }
 
     public void restoreTimeout(Callback callback) {
         synchronized (mLock) {
-            if (isCurrentSnackbarLocked(callback)) {
-                scheduleTimeoutLocked(mCurrentSnackbar);
+            final SnackbarRecord shown = findShownLocked(callback);
+            if (shown != null) {
+                scheduleTimeoutLocked(shown);
             }
         }
     }
 
+    /**
+     * Lock-free, see the class documentation.
+     */
     public boolean isCurrent(Callback callback) {
-        synchronized (mLock) {
-            return isCurrentSnackbarLocked(callback);
+        final SnackbarRecord record = callback.record;
+        if (record == null) {
+            return false;
         }
+        final int state = record.state;
+        return state == SnackbarRecord.STATE_SHOWN || state == SnackbarRecord.STATE_DISMISSING;
     }
 
+    /**
+     * Lock-free, see the class documentation.
+     */
     public boolean isCurrentOrNext(Callback callback) {
-        synchronized (mLock) {
-            return isCurrentSnackbarLocked(callback) || isNextSnackbarLocked(callback);
-        }
+        final SnackbarRecord record = callback.record;
+        return record != null && record.state != SnackbarRecord.STATE_DONE;
     }
 
-    private static class SnackbarRecord {
-        private final WeakReference<Callback> callback;
-        private int duration;
+    static class SnackbarRecord implements Runnable {
+        /** Waiting in the queue. */
+        static final int STATE_QUEUED = 0;
+        /** Held back by the rate limit of its channel. */
+        static final int STATE_PENDING = 1;
+        /** On screen, or on its way in. */
+        static final int STATE_SHOWN = 2;
+        /** On its way out. */
+        static final int STATE_DISMISSING = 3;
+        /** Dismissed, dropped or merged. */
+        static final int STATE_DONE = 4;
+
+        private static final AtomicIntegerFieldUpdater<SnackbarRecord> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(SnackbarRecord.class, "state");
+
+        final WeakReference<Callback> callback;
+        final Object coalesceKey;
+        final String channel;
+        int duration;
+        int priority;
+        int count = 1;
+        volatile int state = STATE_QUEUED;
+
+        // Maintained by SnackbarQueue
+        long sequence;
+        int heapIndex = -1;
+        SnackbarRecord older;
+        SnackbarRecord newer;
+        int traceCookie;
 
-        SnackbarRecord(int duration, Callback callback) {
+        // The record is its own timeout task
+        SnackbarManager manager;
+        long timeoutAt = Long.MAX_VALUE;
+
+        SnackbarRecord(int duration, int priority, Object coalesceKey, String channel,
+                       Callback callback) {
             this.callback = new WeakReference<>(callback);
+            this.coalesceKey = coalesceKey;
+            this.channel = channel;
             this.duration = duration;
+            this.priority = priority;
+            // From the show to the dismiss, dropped or merged
+            this.traceCookie = SnackbarTrace.beginAsync(SnackbarTrace.RECORD);
+        }
+
+        void endTrace() {
+            SnackbarTrace.endAsync(SnackbarTrace.RECORD, traceCookie);
+            traceCookie = 0;
         }
 
         boolean isSnackbar(Callback callback) {
             return callback != null && this.callback.get() == callback;
         }
+
+        boolean transition(int from, int to) {
+            return STATE.compareAndSet(this, from, to);
+        }
+
+        @Override
+        public void run() {
+            if (manager != null) {
+                manager.handleTimeout(this);
+            }
+        }
     }
 
+    /**
+     * Fill the free slots from the queue.
+     */
     private void showNextSnackbarLocked() {
-        if (mNextSnackbar != null) {
-            mCurrentSnackbar = mNextSnackbar;
-            mNextSnackbar = null;
-
-            final Callback callback = mCurrentSnackbar.callback.get();
-            if (callback != null) {
+        SnackbarRecord next;
+        while (mShownCount < mMaxVisible && (next = mQueue.poll()) != null) {
+            final Callback callback = next.callback.get();
+            if (callback != null
+                    && next.transition(SnackbarRecord.STATE_QUEUED, SnackbarRecord.STATE_SHOWN)) {
+                mShown[mShownCount++] = next;
                 callback.show();
             } else {
-                // The callback doesn't exist any more, clear out the Snackbar
-                mCurrentSnackbar = null;
+                // The callback doesn't exist any more, skip the Snackbar
+                next.state = SnackbarRecord.STATE_DONE;
+                next.endTrace();
             }
         }
     }
 
+    /**
+     * Start dismissing a shown record.
+     *
+     * @return whether the record is on its way out, false if its callback is gone.
+     */
     private boolean cancelSnackbarLocked(SnackbarRecord record, int event) {
         final Callback callback = record.callback.get();
-        if (callback != null) {
+        if (callback == null) {
+            return false;
+        }
+        if (record.transition(SnackbarRecord.STATE_SHOWN, SnackbarRecord.STATE_DISMISSING)) {
             callback.dismiss(event);
-            return true;
         }
-        return false;
+        // Else it's already being dismissed
+        return true;
+    }
+
+    private SnackbarRecord findShownLocked(Callback callback) {
+        final SnackbarRecord record = callback.record;
+        return record != null && isShownLocked(record) ? record : null;
     }
 
-    private boolean isCurrentSnackbarLocked(Callback callback) {
-        return mCurrentSnackbar != null && mCurrentSnackbar.isSnackbar(callback);
+    private boolean isShownLocked(SnackbarRecord record) {
+        final int state = record.state;
+        return state == SnackbarRecord.STATE_SHOWN || state == SnackbarRecord.STATE_DISMISSING;
     }
 
-    private boolean isNextSnackbarLocked(Callback callback) {
-        return mNextSnackbar != null && mNextSnackbar.isSnackbar(callback);
+    private void removeShownLocked(SnackbarRecord record) {
+        for (int i = 0; i < mShownCount; i++) {
+            if (mShown[i] == record) {
+                System.arraycopy(mShown, i + 1, mShown, i, mShownCount - i - 1);
+                mShown[--mShownCount] = null;
+                return;
+            }
+        }
     }
 
     private void scheduleTimeoutLocked(SnackbarRecord r) {
@@ -219,13 +758,51 @@ class SnackbarManager {
         } else if (r.duration == Snackbar.LENGTH_SHORT) {
             durationMs = SHORT_DURATION_MS;
         }
-        mHandler.removeCallbacksAndMessages(r);
-        mHandler.sendMessageDelayed(Message.obtain(mHandler, MSG_TIMEOUT, r), durationMs);
+        mScheduler.cancel(r);
+        r.timeoutAt = mScheduler.now() + durationMs;
+        mScheduler.postDelayed(r, durationMs);
+    }
+
+    private void cancelTimeoutLocked(SnackbarRecord r) {
+        mScheduler.cancel(r);
+        r.timeoutAt = Long.MAX_VALUE;
+    }
+
+    private void scheduleRateLimitLocked(TokenBucket bucket) {
+        long delay = bucket.delayUntilNextToken(mScheduler.now());
+        mScheduler.cancel(bucket.releaseTask);
+        mScheduler.postDelayed(bucket.releaseTask, delay);
+    }
+
+    private void handleRateLimit(TokenBucket bucket) {
+        synchronized (mLock) {
+            if (mChannels.get(bucket.channel) != bucket) {
+                // The limit has been changed or cleared since
+                return;
+            }
+            final long now = mScheduler.now();
+            boolean queued = false;
+            while (!bucket.pending.isEmpty() && bucket.tryAcquire(now)) {
+                SnackbarRecord record = bucket.pending.pollFirst();
+                bucket.admittedCount++;
+                record.state = SnackbarRecord.STATE_QUEUED;
+                if (offerLocked(record) != record) {
+                    queued = true;
+                }
+            }
+            if (!bucket.pending.isEmpty()) {
+                scheduleRateLimitLocked(bucket);
+            }
+            if (queued) {
+                showOrWaitLocked();
+            }
+        }
     }
 
-    private void handleTimeout(SnackbarRecord record) {
+    void handleTimeout(SnackbarRecord record) {
         synchronized (mLock) {
-            if (mCurrentSnackbar == record || mNextSnackbar == record) {
+            // A run of a timeout that has been rescheduled or cancelled since may still come
+            if (isShownLocked(record) && mScheduler.now() >= record.timeoutAt) {
                 cancelSnackbarLocked(record, Snackbar.Callback.DISMISS_EVENT_TIMEOUT);
             }
         }
@@ -0,0 +1,87 @@
+package com.oginotihiro.snackbar;
+
+/**
+ * {@link SnackbarMetricsListener} collecting everything into {@link SnackbarHistogram}s, cheap
+ * enough to be left enabled in release builds.
+ */
+public final class SnackbarMetrics implements SnackbarMetricsListener {
+    private static final int DISMISS_EVENT_COUNT = Snackbar.Callback.DISMISS_EVENT_CONSECUTIVE + 1;
+
+    private final SnackbarHistogram mQueueWait = new SnackbarHistogram();
+    private final SnackbarHistogram mLayout = new SnackbarHistogram();
+    private final SnackbarHistogram mEntry = new SnackbarHistogram();
+    private final SnackbarHistogram mOnScreen = new SnackbarHistogram();
+    private final SnackbarHistogram mExit = new SnackbarHistogram();
+    private final SnackbarHistogram mQueueDepth = new SnackbarHistogram();
+    private final long[] mDismissCounts = new long[DISMISS_EVENT_COUNT];
+
+    @Override
+    public void onShown(long queueWaitMs, long layoutMs, long entryMs) {
+        mQueueWait.record(queueWaitMs);
+        mLayout.record(layoutMs);
+        mEntry.record(entryMs);
+    }
+
+    @Override
+    public void onHidden(int event, long onScreenMs, long exitMs) {
+        mOnScreen.record(onScreenMs);
+        mExit.record(exitMs);
+        if (event >= 0 && event < DISMISS_EVENT_COUNT) {
+            synchronized (mDismissCounts) {
+                mDismissCounts[event]++;
+            }
+        }
+    }
+
+    @Override
+    public void onQueueDepth(int depth) {
+        mQueueDepth.record(depth);
+    }
+
+    public SnackbarHistogram getQueueWait() {
+        return mQueueWait;
+    }
+
+    public SnackbarHistogram getLayout() {
+        return mLayout;
+    }
+
+    public SnackbarHistogram getEntry() {
+        return mEntry;
+    }
+
+    public SnackbarHistogram getOnScreen() {
+        return mOnScreen;
+    }
+
+    public SnackbarHistogram getExit() {
+        return mExit;
+    }
+
+    public SnackbarHistogram getQueueDepth() {
+        return mQueueDepth;
+    }
+
+    /**
+     * Returns how many Snackbars have been dismissed for {@code event}.
+     */
+    public long getDismissCount(@Snackbar.Callback.DismissEvent int event) {
+        synchronized (mDismissCounts) {
+            return mDismissCounts[event];
+        }
+    }
+
+    public void reset() {
+        mQueueWait.reset();
+        mLayout.reset();
+        mEntry.reset();
+        mOnScreen.reset();
+        mExit.reset();
+        mQueueDepth.reset();
+        synchronized (mDismissCounts) {
+            for (int i = 0; i < mDismissCounts.length; i++) {
+                mDismissCounts[i] = 0;
+            }
+        }
+    }
+}
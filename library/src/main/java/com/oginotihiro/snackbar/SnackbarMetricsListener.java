@@ -0,0 +1,38 @@
+package com.oginotihiro.snackbar;
+
+/**
+ * Told how every Snackbar behaves, for monitoring. Only primitives are passed, and a duration
+ * that doesn't apply, e.g. the time on screen of a Snackbar dismissed while queued, is -1.
+ * <p>
+ * Methods may be called from any thread, {@link #onQueueDepth} while a
+ * {@link SnackbarManager} lock is held: implementations must be quick and must not call back
+ * into {@link Snackbar}. {@link SnackbarMetrics} collects them into histograms.
+ *
+ * @see Snackbar#setMetricsListener(SnackbarMetricsListener)
+ */
+public interface SnackbarMetricsListener {
+    /**
+     * A Snackbar is on screen.
+     *
+     * @param queueWaitMs From {@link Snackbar#show()} to its view being added.
+     * @param layoutMs    From its view being added to the entry animation starting.
+     * @param entryMs     Duration of the entry animation.
+     */
+    void onShown(long queueWaitMs, long layoutMs, long entryMs);
+
+    /**
+     * A Snackbar is gone.
+     *
+     * @param event      One of the {@code DISMISS_EVENT_*} of {@link Snackbar.Callback}.
+     * @param onScreenMs From the end of its entry to the start of its exit.
+     * @param exitMs     Duration of the exit animation.
+     */
+    void onHidden(int event, long onScreenMs, long exitMs);
+
+    /**
+     * A Snackbar has been queued.
+     *
+     * @param depth How many Snackbars are waiting in its scope, including it.
+     */
+    void onQueueDepth(int depth);
+}
@@ -0,0 +1,58 @@
+package com.oginotihiro.snackbar;
+
+import android.content.Context;
+import android.os.MessageQueue;
+import android.view.Gravity;
+import android.view.View;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Does the one-off work of the first Snackbar while the main looper is idle: creating the
+ * {@link SnackbarManager}, loading the classes and resolving the styles of the default layout,
+ * flat or not as set by {@link Snackbar#setDefaultFlatLayout(boolean)}, and filling the
+ * {@link SnackbarLayoutPool} of a window. One layout is inflated per idle callback so that a
+ * single idle slot is never held for long.
+ *
+ * @see Snackbar#prewarm(Context)
+ * @see Snackbar#prewarm(View, int)
+ */
+final class SnackbarPrewarmer implements MessageQueue.IdleHandler {
+    private final Context mContext;
+    private final WeakReference<View> mView;
+    private int mRemaining;
+    private boolean mManagerReady;
+
+    SnackbarPrewarmer(Context context, View view, int count) {
+        mContext = context;
+        mView = view != null ? new WeakReference<>(view) : null;
+        mRemaining = count;
+    }
+
+    @Override
+    public boolean queueIdle() {
+        if (!mManagerReady) {
+            SnackbarManager.getInstance();
+            mManagerReady = true;
+            return true;
+        }
+
+        if (mView == null) {
+            // Nowhere to keep it, inflate once so the next inflation hits warm caches
+            Snackbar.newDefaultLayout(mContext, Gravity.BOTTOM, Snackbar.isDefaultFlatLayout());
+            return false;
+        }
+
+        final View view = mView.get();
+        if (view == null || mRemaining <= 0) {
+            return false;
+        }
+        final SnackbarLayoutPool pool = SnackbarLayoutPool.from(view);
+        if (pool.getMaxSize() < mRemaining) {
+            pool.setMaxSize(mRemaining);
+        }
+        pool.release(Snackbar.newDefaultLayout(view.getContext(), Gravity.BOTTOM,
+                Snackbar.isDefaultFlatLayout()));
+        return --mRemaining > 0;
+    }
+}
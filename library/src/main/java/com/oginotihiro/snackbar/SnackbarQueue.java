@@ -0,0 +1,272 @@
+package com.oginotihiro.snackbar;
+
+/**
+ * Bounded priority queue of pending {@link SnackbarManager.SnackbarRecord}s.
+ * <p>
+ * Records are kept in a binary max-heap ordered by priority, ties broken by insertion order,
+ * so {@link #offer} and {@link #poll} are O(log n). An intrusive insertion-order list lets the
+ * oldest record be found in O(1) when the queue overflows.
+ */
+final class SnackbarQueue {
+    private SnackbarManager.SnackbarRecord[] mHeap;
+    private int mSize;
+    private int mCapacity;
+    private int mOverflowPolicy;
+    private long mSequence;
+    private long mDroppedCount;
+
+    private SnackbarManager.SnackbarRecord mOldest;
+    private SnackbarManager.SnackbarRecord mNewest;
+
+    SnackbarQueue(int capacity, int overflowPolicy) {
+        checkCapacity(capacity);
+        mCapacity = capacity;
+        mOverflowPolicy = overflowPolicy;
+        mHeap = new SnackbarManager.SnackbarRecord[capacity];
+    }
+
+    private static void checkCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0");
+        }
+    }
+
+    /**
+     * Change the capacity and the overflow policy. If the queue holds more records than the
+     * new capacity, the excess is dropped according to the new policy.
+     */
+    void setCapacity(int capacity, int overflowPolicy) {
+        checkCapacity(capacity);
+        mOverflowPolicy = overflowPolicy;
+        while (mSize > capacity) {
+            final SnackbarManager.SnackbarRecord dropped;
+            if (overflowPolicy == Snackbar.OVERFLOW_DROP_OLDEST) {
+                dropped = removeAt(mOldest.heapIndex);
+            } else if (overflowPolicy == Snackbar.OVERFLOW_DROP_NEWEST) {
+                dropped = removeAt(mNewest.heapIndex);
+            } else {
+                dropped = removeAt(findLowestIndex());
+            }
+            dropped.state = SnackbarManager.SnackbarRecord.STATE_DONE;
+            dropped.endTrace();
+            mDroppedCount++;
+        }
+        SnackbarManager.SnackbarRecord[] heap = new SnackbarManager.SnackbarRecord[capacity];
+        System.arraycopy(mHeap, 0, heap, 0, mSize);
+        mHeap = heap;
+        mCapacity = capacity;
+    }
+
+    int getCapacity() {
+        return mCapacity;
+    }
+
+    int getOverflowPolicy() {
+        return mOverflowPolicy;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * Returns how many records have been dropped because the queue was full.
+     */
+    long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    /**
+     * Queue a record.
+     *
+     * @return the record dropped to respect the capacity, which may be {@code record} itself,
+     * or {@code null} if nothing had to be dropped.
+     */
+    SnackbarManager.SnackbarRecord offer(SnackbarManager.SnackbarRecord record) {
+        SnackbarManager.SnackbarRecord dropped = null;
+        if (mSize == mCapacity) {
+            if (mOverflowPolicy == Snackbar.OVERFLOW_DROP_OLDEST) {
+                dropped = removeAt(mOldest.heapIndex);
+            } else if (mOverflowPolicy == Snackbar.OVERFLOW_DROP_NEWEST) {
+                mDroppedCount++;
+                return record;
+            } else {
+                int lowest = findLowestIndex();
+                if (record.priority <= mHeap[lowest].priority) {
+                    mDroppedCount++;
+                    return record;
+                }
+                dropped = removeAt(lowest);
+            }
+            mDroppedCount++;
+        }
+
+        record.sequence = mSequence++;
+        record.older = mNewest;
+        record.newer = null;
+        if (mNewest != null) {
+            mNewest.newer = record;
+        } else {
+            mOldest = record;
+        }
+        mNewest = record;
+
+        mHeap[mSize] = record;
+        record.heapIndex = mSize;
+        mSize++;
+        siftUp(record.heapIndex);
+        return dropped;
+    }
+
+    SnackbarManager.SnackbarRecord peek() {
+        return mSize == 0 ? null : mHeap[0];
+    }
+
+    SnackbarManager.SnackbarRecord poll() {
+        return mSize == 0 ? null : removeAt(0);
+    }
+
+    boolean remove(SnackbarManager.SnackbarRecord record) {
+        int index = record.heapIndex;
+        if (index < 0 || index >= mSize || mHeap[index] != record) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    SnackbarManager.SnackbarRecord findByKey(Object coalesceKey) {
+        for (int i = 0; i < mSize; i++) {
+            if (coalesceKey.equals(mHeap[i].coalesceKey)) {
+                return mHeap[i];
+            }
+        }
+        return null;
+    }
+
+    SnackbarManager.SnackbarRecord findNewestInChannel(String channel) {
+        for (SnackbarManager.SnackbarRecord r = mNewest; r != null; r = r.older) {
+            if (channel.equals(r.channel)) {
+                return r;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Change the priority of a queued record and restore the heap order.
+     */
+    void updatePriority(SnackbarManager.SnackbarRecord record, int priority) {
+        int old = record.priority;
+        record.priority = priority;
+        if (priority > old) {
+            siftUp(record.heapIndex);
+        } else if (priority < old) {
+            siftDown(record.heapIndex);
+        }
+    }
+
+    void clear() {
+        for (int i = 0; i < mSize; i++) {
+            unlink(mHeap[i]);
+            mHeap[i] = null;
+        }
+        mSize = 0;
+    }
+
+    private SnackbarManager.SnackbarRecord removeAt(int index) {
+        SnackbarManager.SnackbarRecord removed = mHeap[index];
+        mSize--;
+        if (index != mSize) {
+            SnackbarManager.SnackbarRecord last = mHeap[mSize];
+            mHeap[index] = last;
+            last.heapIndex = index;
+            mHeap[mSize] = null;
+            siftDown(index);
+            if (mHeap[index] == last) {
+                siftUp(index);
+            }
+        } else {
+            mHeap[mSize] = null;
+        }
+        unlink(removed);
+        return removed;
+    }
+
+    private void unlink(SnackbarManager.SnackbarRecord record) {
+        if (record.older != null) {
+            record.older.newer = record.newer;
+        } else {
+            mOldest = record.newer;
+        }
+        if (record.newer != null) {
+            record.newer.older = record.older;
+        } else {
+            mNewest = record.older;
+        }
+        record.older = null;
+        record.newer = null;
+        record.heapIndex = -1;
+    }
+
+    /**
+     * The lowest priority record is always a leaf, so only the second half of the heap is
+     * scanned. Among equal priorities the most recently queued one is picked.
+     */
+    private int findLowestIndex() {
+        int lowest = mSize >>> 1;
+        for (int i = lowest + 1; i < mSize; i++) {
+            SnackbarManager.SnackbarRecord r = mHeap[i];
+            SnackbarManager.SnackbarRecord l = mHeap[lowest];
+            if (r.priority < l.priority || (r.priority == l.priority && r.sequence > l.sequence)) {
+                lowest = i;
+            }
+        }
+        return lowest;
+    }
+
+    private static boolean before(SnackbarManager.SnackbarRecord a, SnackbarManager.SnackbarRecord b) {
+        return a.priority > b.priority || (a.priority == b.priority && a.sequence < b.sequence);
+    }
+
+    private void siftUp(int index) {
+        SnackbarManager.SnackbarRecord record = mHeap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            SnackbarManager.SnackbarRecord p = mHeap[parent];
+            if (!before(record, p)) {
+                break;
+            }
+            mHeap[index] = p;
+            p.heapIndex = index;
+            index = parent;
+        }
+        mHeap[index] = record;
+        record.heapIndex = index;
+    }
+
+    private void siftDown(int index) {
+        SnackbarManager.SnackbarRecord record = mHeap[index];
+        int half = mSize >>> 1;
+        while (index < half) {
+            int child = (index << 1) + 1;
+            int right = child + 1;
+            if (right < mSize && before(mHeap[right], mHeap[child])) {
+                child = right;
+            }
+            SnackbarManager.SnackbarRecord c = mHeap[child];
+            if (!before(c, record)) {
+                break;
+            }
+            mHeap[index] = c;
+            c.heapIndex = index;
+            index = child;
+        }
+        mHeap[index] = record;
+        record.heapIndex = index;
+    }
+}
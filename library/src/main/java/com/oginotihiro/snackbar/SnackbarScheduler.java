@@ -0,0 +1,29 @@
+package com.oginotihiro.snackbar;
+
+/**
+ * Runs the delayed work of Snackbars, their timeouts and rate limit releases, and tells the
+ * time these delays are measured with. {@link MainLooperScheduler} is the default,
+ * {@link VirtualTimeScheduler} runs on a clock driven by hand.
+ * <p>
+ * Implementations may run tasks on any thread, later than asked but never earlier: when a task
+ * runs, {@link #now()} must have reached the time it was due, else it's ignored.
+ *
+ * @see Snackbar#setScheduler(SnackbarScheduler)
+ */
+public interface SnackbarScheduler {
+    /**
+     * Returns the current time in milliseconds, on a monotonic clock.
+     */
+    long now();
+
+    /**
+     * Run {@code task} once, {@code delayMs} from now. Posting a task already waiting adds a
+     * second run.
+     */
+    void postDelayed(Runnable task, long delayMs);
+
+    /**
+     * Remove every pending run of {@code task}. A run already started isn't affected.
+     */
+    void cancel(Runnable task);
+}
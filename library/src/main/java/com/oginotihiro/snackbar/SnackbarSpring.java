@@ -0,0 +1,126 @@
+package com.oginotihiro.snackbar;
+
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+import android.view.animation.AnimationUtils;
+
+/**
+ * Damped spring moving one view along one axis, stepped once per animation frame.
+ * <p>
+ * The spring can be given a new target at any time: it carries on from its current position
+ * and velocity, so a Snackbar dismissed while still entering turns back where it is instead of
+ * finishing the entry first.
+ */
+final class SnackbarSpring implements Runnable {
+    private static final float DAMPING_RATIO = 0.9f;
+    // Settling is measured on a critically damped envelope, 4 time constants
+    private static final float SETTLE_TIME_CONSTANTS = 4f;
+    private static final float STEP_SECONDS = 0.004f;
+    private static final long MAX_FRAME_MS = 48;
+    private static final float REST_DISTANCE = 0.5f;
+    private static final float REST_VELOCITY = 20f;
+
+    private final View mView;
+    private final SnackbarAnimationBridge mBridge;
+
+    private boolean mHorizontal;
+    private float mPosition;
+    private float mVelocity;
+    private float mTarget;
+    private float mStiffness;
+    private float mDamping;
+    // Stop as soon as the target is crossed instead of settling on it, e.g. off-screen
+    private boolean mStopAtTarget;
+    private boolean mRunning;
+    private long mLastFrameMs;
+
+    SnackbarSpring(View view, SnackbarAnimationBridge bridge) {
+        mView = view;
+        mBridge = bridge;
+    }
+
+    boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * Start from {@code from} at rest, or keep the current motion if already running on the
+     * same axis, and go to {@code target}.
+     */
+    void animateTo(boolean horizontal, float from, float target, int durationMs, boolean stopAtTarget) {
+        if (!mRunning || mHorizontal != horizontal) {
+            mPosition = from;
+            mVelocity = 0f;
+        }
+        mHorizontal = horizontal;
+        mTarget = target;
+        mStopAtTarget = stopAtTarget;
+
+        final float omega = SETTLE_TIME_CONSTANTS * 1000f / (DAMPING_RATIO * Math.max(1, durationMs));
+        mStiffness = omega * omega;
+        mDamping = 2f * DAMPING_RATIO * omega;
+
+        apply();
+        mBridge.onAnimationStart(mView);
+        if (!mRunning) {
+            mRunning = true;
+            mLastFrameMs = AnimationUtils.currentAnimationTimeMillis();
+            ViewCompat.postOnAnimation(mView, this);
+        }
+    }
+
+    /**
+     * Current position along the axis, which is the translation as long as the spring runs.
+     */
+    float getPosition(boolean horizontal) {
+        if (mRunning && mHorizontal == horizontal) {
+            return mPosition;
+        }
+        return horizontal ? ViewCompat.getTranslationX(mView) : ViewCompat.getTranslationY(mView);
+    }
+
+    void cancel() {
+        mRunning = false;
+    }
+
+    @Override
+    public void run() {
+        if (!mRunning) {
+            return;
+        }
+        final long now = AnimationUtils.currentAnimationTimeMillis();
+        float remaining = Math.min(MAX_FRAME_MS, Math.max(0, now - mLastFrameMs)) / 1000f;
+        mLastFrameMs = now;
+
+        final float side = Math.signum(mPosition - mTarget);
+        while (remaining > 0f) {
+            final float dt = Math.min(STEP_SECONDS, remaining);
+            // Semi-implicit Euler, stable at these step sizes
+            final float acceleration = -mStiffness * (mPosition - mTarget) - mDamping * mVelocity;
+            mVelocity += acceleration * dt;
+            mPosition += mVelocity * dt;
+            remaining -= dt;
+        }
+
+        final boolean crossed = side != 0f && Math.signum(mPosition - mTarget) != side;
+        if ((mStopAtTarget && crossed)
+                || (Math.abs(mPosition - mTarget) < REST_DISTANCE && Math.abs(mVelocity) < REST_VELOCITY)) {
+            mPosition = mTarget;
+            mVelocity = 0f;
+            mRunning = false;
+            apply();
+            mBridge.onAnimationEnd(mView);
+            return;
+        }
+        apply();
+        ViewCompat.postOnAnimation(mView, this);
+    }
+
+    private void apply() {
+        if (mHorizontal) {
+            ViewCompat.setTranslationX(mView, mPosition);
+        } else {
+            ViewCompat.setTranslationY(mView, mPosition);
+        }
+    }
+}
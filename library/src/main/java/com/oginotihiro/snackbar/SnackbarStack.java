@@ -0,0 +1,143 @@
+package com.oginotihiro.snackbar;
+
+import android.os.SystemClock;
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.animation.Interpolator;
+
+import java.util.ArrayList;
+
+/**
+ * Lays out the Snackbars stacked against one edge of a parent, when more than one may be shown
+ * at a time. The newest Snackbar sits against the edge and the older ones are pushed away from
+ * it by the heights of the newer ones.
+ * <p>
+ * When a Snackbar enters or leaves, every other Snackbar of the stack slides to its new place
+ * in one batched animation: a single animation frame callback moves all of them, instead of one
+ * animator per view. Only the translation is animated, so there is no layout pass.
+ */
+final class SnackbarStack implements Runnable {
+    private static final Interpolator INTERPOLATOR = SnackbarAnimators.FAST_OUT_SLOW_IN;
+
+    private final ViewGroup mParent;
+    private final int mSign;
+    // Oldest first
+    private final ArrayList<View> mViews = new ArrayList<>();
+    private float[] mFrom = new float[4];
+    private float[] mTo = new float[4];
+    private Snackbar.SnackbarLayoutBase mEntering;
+    private long mStartTime;
+    private int mDuration;
+    private boolean mRunning;
+
+    private SnackbarStack(ViewGroup parent, int sign) {
+        mParent = parent;
+        mSign = sign;
+    }
+
+    /**
+     * Returns the stack of the edge Snackbars of {@code direction} enter from.
+     */
+    static SnackbarStack from(ViewGroup parent, int direction) {
+        final boolean top = direction == Snackbar.TOP_BOTTOM;
+        final int key = top ? R.id.snackbar_stack_top : R.id.snackbar_stack_bottom;
+        SnackbarStack stack = (SnackbarStack) parent.getTag(key);
+        if (stack == null) {
+            stack = new SnackbarStack(parent, top ? 1 : -1);
+            parent.setTag(key, stack);
+        }
+        return stack;
+    }
+
+    /**
+     * Add a laid out view against the edge, and slide the others away. The view itself is left
+     * to its own entry animation.
+     */
+    void push(Snackbar.SnackbarLayoutBase view, int duration) {
+        if (mViews.contains(view)) {
+            return;
+        }
+        if (mEntering != null) {
+            // Cut the previous entry short, it now moves with the rest of the stack. Its
+            // Snackbar is told it has entered, which clears mEntering
+            final Snackbar.SnackbarLayoutBase entering = mEntering;
+            entering.getAnimationBridge().finish();
+            // Horizontal entries slide along X, which the stack never moves back
+            ViewCompat.setTranslationX(entering, 0f);
+        }
+        mViews.add(view);
+        mEntering = view;
+        animate(duration);
+    }
+
+    /**
+     * Called once the entry animation of a pushed view has finished.
+     */
+    void onEntered(View view) {
+        if (mEntering == view) {
+            mEntering = null;
+        }
+    }
+
+    /**
+     * Returns whether the view sits against the edge.
+     */
+    boolean isNewest(View view) {
+        return !mViews.isEmpty() && mViews.get(mViews.size() - 1) == view;
+    }
+
+    /**
+     * Remove a view which is leaving, and close the gap it leaves.
+     */
+    void remove(View view, int duration) {
+        if (!mViews.remove(view)) {
+            return;
+        }
+        if (mEntering == view) {
+            mEntering = null;
+        }
+        if (!mViews.isEmpty()) {
+            animate(duration);
+        }
+    }
+
+    private void animate(int duration) {
+        final int count = mViews.size();
+        if (mFrom.length < count) {
+            mFrom = new float[count * 2];
+            mTo = new float[count * 2];
+        }
+        float offset = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            final View view = mViews.get(i);
+            mFrom[i] = ViewCompat.getTranslationY(view);
+            mTo[i] = offset;
+            offset += mSign * view.getHeight();
+        }
+        mStartTime = SystemClock.uptimeMillis();
+        mDuration = duration;
+        if (!mRunning) {
+            mRunning = true;
+            ViewCompat.postOnAnimation(mParent, this);
+        }
+    }
+
+    @Override
+    public void run() {
+        final float fraction = mDuration > 0
+                ? Math.min(1f, (SystemClock.uptimeMillis() - mStartTime) / (float) mDuration) : 1f;
+        final float interpolated = INTERPOLATOR.getInterpolation(fraction);
+        for (int i = 0, count = mViews.size(); i < count; i++) {
+            final View view = mViews.get(i);
+            if (view != mEntering) {
+                ViewCompat.setTranslationY(view, mFrom[i] + (mTo[i] - mFrom[i]) * interpolated);
+            }
+        }
+        if (fraction < 1f) {
+            ViewCompat.postOnAnimation(mParent, this);
+        } else {
+            mRunning = false;
+        }
+    }
+}
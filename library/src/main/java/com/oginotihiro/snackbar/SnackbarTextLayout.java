@@ -0,0 +1,19 @@
+package com.oginotihiro.snackbar;
+
+import android.view.View;
+
+/**
+ * A default layout, showing the text and the action of a Snackbar made with a text.
+ *
+ * @see DefaultSnackLayout
+ * @see FlatSnackLayout
+ */
+interface SnackbarTextLayout {
+    void setText(CharSequence text);
+
+    /**
+     * @param action   The text of the action, or {@code null} to hide it.
+     * @param listener Called when the action is clicked, or {@code null} if it can't be.
+     */
+    void setAction(CharSequence action, View.OnClickListener listener);
+}
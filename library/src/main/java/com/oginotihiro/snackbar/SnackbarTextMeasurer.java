@@ -0,0 +1,222 @@
+package com.oginotihiro.snackbar;
+
+import android.os.Process;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lays Snackbar texts out on a background thread, ahead of their first layout on the main thread,
+ * for layouts drawing their text themselves, i.e. {@link FlatSnackLayout}.
+ * <p>
+ * Each layout class registers its own template, a copy of the paint and padding of its text and
+ * action, when its first instance is made, so nothing is measured for a class before it has been
+ * made once, e.g. by {@link Snackbar#prewarm(android.content.Context)}. The text gets the width of
+ * the container less the action's, as in the layout. The resulting layouts are kept in a small
+ * LRU cache keyed by template, text and width, from which layouts of that class get them as they
+ * are, as often as the same text is shown.
+ * <p>
+ * A {@link DefaultSnackLayout} has none: its text view can't take a layout made elsewhere.
+ *
+ * @see Snackbar#setPremeasureText(boolean)
+ */
+final class SnackbarTextMeasurer {
+    private static final int CACHE_SIZE = 32;
+    private static final long KEEP_ALIVE_MS = 3000;
+
+    private static final SnackbarTextMeasurer sInstance = new SnackbarTextMeasurer();
+
+    // Main thread only
+    private final HashMap<Class<?>, Template> mTemplates = new HashMap<>();
+    private final LinkedHashMap<Key, StaticLayout> mCache =
+            new LinkedHashMap<Key, StaticLayout>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, StaticLayout> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+    private ThreadPoolExecutor mExecutor;
+
+    private static final class Template {
+        // Only read by the worker, a TextPaint is not thread safe
+        final TextPaint paint;
+        final int horizontalPadding;
+        // Width taken by an action: its text, padding and margin, at least its minimum width
+        final TextPaint actionPaint;
+        final int actionPadding;
+        final int actionMinWidth;
+        final int actionMargin;
+        // The locale to upper case the action in, or null if it's shown as is
+        final Locale actionLocale;
+
+        Template(TextPaint textPaint, int horizontalPadding, TextPaint actionPaint, int actionPadding,
+                 int actionMinWidth, int actionMargin, Locale actionLocale) {
+            paint = new TextPaint(textPaint);
+            this.horizontalPadding = horizontalPadding;
+            this.actionPaint = new TextPaint(actionPaint);
+            this.actionPadding = actionPadding;
+            this.actionMinWidth = actionMinWidth;
+            this.actionMargin = actionMargin;
+            this.actionLocale = actionLocale;
+        }
+
+        /**
+         * The width of the text beside {@code action}, or none, in a parent of the given content
+         * width. Worker thread only, for the paints.
+         */
+        int textWidth(int contentWidth, String action) {
+            int width = contentWidth - horizontalPadding;
+            if (action != null && !action.isEmpty()) {
+                final String shown = actionLocale != null ? action.toUpperCase(actionLocale) : action;
+                final int actionWidth = (int) Math.ceil(actionPaint.measureText(shown)) + actionPadding;
+                width -= Math.max(actionMinWidth, actionWidth) + actionMargin;
+            }
+            return width;
+        }
+    }
+
+    private static final class Key {
+        final Template template;
+        final String text;
+        final int width;
+
+        Key(Template template, String text, int width) {
+            this.template = template;
+            this.text = text;
+            this.width = width;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return template == other.template && width == other.width && text.equals(other.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(template) + text.hashCode()) + width;
+        }
+    }
+
+    private final class Task implements Runnable {
+        private final String mText;
+        private final int mContentWidth;
+        private final String mAction;
+        private final Template mTaskTemplate;
+
+        Task(String text, int contentWidth, String action, Template template) {
+            mText = text;
+            mContentWidth = contentWidth;
+            mAction = action;
+            mTaskTemplate = template;
+        }
+
+        @Override
+        public void run() {
+            final int width = mTaskTemplate.textWidth(mContentWidth, mAction);
+            if (width <= 0) {
+                return;
+            }
+            final Key key = new Key(mTaskTemplate, mText, width);
+            synchronized (mCache) {
+                if (mCache.containsKey(key)) {
+                    // Measured already
+                    return;
+                }
+            }
+            // A paint of its own, never changed once the layout is cached
+            final TextPaint paint = new TextPaint(mTaskTemplate.paint);
+            final StaticLayout layout = new StaticLayout(mText, paint, width,
+                    Layout.Alignment.ALIGN_NORMAL, 1f, 0f, true);
+            synchronized (mCache) {
+                mCache.put(key, layout);
+            }
+        }
+    }
+
+    private SnackbarTextMeasurer() {
+    }
+
+    static SnackbarTextMeasurer getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Set the template of the texts of {@code layoutClass}, if it has none yet: text drawn with
+     * {@code paint} and the default spacing, {@code horizontalPadding} narrower than its view,
+     * beside an action drawn with {@code actionPaint}, upper cased in {@code actionLocale} unless
+     * {@code null}. Main thread only.
+     */
+    void setTemplate(Class<?> layoutClass, TextPaint paint, int horizontalPadding,
+                     TextPaint actionPaint, int actionPadding, int actionMinWidth, int actionMargin,
+                     Locale actionLocale) {
+        if (!mTemplates.containsKey(layoutClass)) {
+            mTemplates.put(layoutClass, new Template(paint, horizontalPadding, actionPaint,
+                    actionPadding, actionMinWidth, actionMargin, actionLocale));
+        }
+    }
+
+    /**
+     * Lay {@code text} out on the background thread as {@code layoutClass} would, at the width it
+     * gets beside {@code action}, or none, in a parent of the given content width, unless it has
+     * been already. Main thread only.
+     */
+    void premeasure(Class<?> layoutClass, String text, int contentWidth, String action) {
+        final Template template = mTemplates.get(layoutClass);
+        if (template == null || text == null || text.isEmpty()
+                || contentWidth <= template.horizontalPadding) {
+            return;
+        }
+        getExecutor().execute(new Task(text, contentWidth, action, template));
+    }
+
+    /**
+     * Returns the layout of {@code text} at {@code width} for {@code layoutClass}, or
+     * {@code null} if it hasn't been measured, or not yet. The layout stays cached for the next
+     * Snackbars showing the same text, so its paint must not be changed. Main thread only.
+     */
+    StaticLayout get(Class<?> layoutClass, String text, int width) {
+        final Template template = mTemplates.get(layoutClass);
+        if (template == null || text == null) {
+            return null;
+        }
+        synchronized (mCache) {
+            return mCache.get(new Key(template, text, width));
+        }
+    }
+
+    private synchronized ThreadPoolExecutor getExecutor() {
+        if (mExecutor == null) {
+            // A single thread, gone when idle, so texts are shaped one at a time off the main one
+            mExecutor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_MS, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            r.run();
+                        }
+                    }, "SnackbarTextMeasurer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            mExecutor.allowCoreThreadTimeOut(true);
+        }
+        return mExecutor;
+    }
+}
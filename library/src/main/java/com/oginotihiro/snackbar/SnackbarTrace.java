@@ -0,0 +1,122 @@
+package com.oginotihiro.snackbar;
+
+import android.os.SystemClock;
+import android.support.v4.os.TraceCompat;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Names Snackbar work in system traces.
+ * <p>
+ * Sections go through {@link TraceCompat} and cost nothing when tracing is off. Async slices,
+ * which may start and end on different threads and frames, use the hidden
+ * {@code android.os.Trace} methods through reflection, and are only emitted while the app tag
+ * is being traced. Whether it is, itself a reflective call, is checked at most once per frame:
+ * slices begun in the frame tracing starts in are missed.
+ */
+final class SnackbarTrace {
+    static final String MAKE = "Snackbar.make";
+    static final String FIND_PARENT = "Snackbar.findSuitableParent";
+    static final String INFLATE = "DefaultSnackLayout.inflate";
+    static final String SHOW_VIEW = "Snackbar.showView";
+    static final String PRE_LAYOUT = "Snackbar.preLayout";
+    static final String AWAIT_LAYOUT = "Snackbar.awaitLayout";
+    static final String ANIMATE_IN = "Snackbar.animateViewIn";
+    static final String ANIMATE_OUT = "Snackbar.animateViewOut";
+    static final String VIEW_HIDDEN = "Snackbar.onViewHidden";
+    static final String RECORD = "Snackbar.record";
+
+    // Trace.TRACE_TAG_APP
+    private static final long TRACE_TAG_APP = 1L << 12;
+    private static final long FRAME_MS = 16;
+
+    private static final Object[] TAG_ARGS = {TRACE_TAG_APP};
+    private static final Method sIsTagEnabled;
+    private static final Method sAsyncTraceBegin;
+    private static final Method sAsyncTraceEnd;
+    private static final AtomicInteger sNextCookie = new AtomicInteger();
+    // The latest result of isTagEnabled, and when it was checked, written in that order
+    private static volatile boolean sEnabled;
+    private static volatile long sCheckedAt = -FRAME_MS;
+
+    static {
+        Method isTagEnabled = null;
+        Method asyncTraceBegin = null;
+        Method asyncTraceEnd = null;
+        try {
+            final Class<?> trace = Class.forName("android.os.Trace");
+            isTagEnabled = trace.getMethod("isTagEnabled", long.class);
+            asyncTraceBegin = trace.getMethod("asyncTraceBegin", long.class, String.class, int.class);
+            asyncTraceEnd = trace.getMethod("asyncTraceEnd", long.class, String.class, int.class);
+        } catch (Throwable e) {
+            // Not available, no async slices
+            isTagEnabled = null;
+        }
+        sIsTagEnabled = isTagEnabled;
+        sAsyncTraceBegin = asyncTraceBegin;
+        sAsyncTraceEnd = asyncTraceEnd;
+    }
+
+    private SnackbarTrace() {
+    }
+
+    static void beginSection(String name) {
+        TraceCompat.beginSection(name);
+    }
+
+    static void endSection() {
+        TraceCompat.endSection();
+    }
+
+    static boolean isEnabled() {
+        if (sIsTagEnabled == null) {
+            return false;
+        }
+        final long now = SystemClock.uptimeMillis();
+        if (now - sCheckedAt < FRAME_MS) {
+            return sEnabled;
+        }
+        boolean enabled;
+        try {
+            enabled = (Boolean) sIsTagEnabled.invoke(null, TAG_ARGS);
+        } catch (Exception e) {
+            enabled = false;
+        }
+        sEnabled = enabled;
+        sCheckedAt = now;
+        return enabled;
+    }
+
+    /**
+     * Start an async slice.
+     *
+     * @return The cookie to end it with, or 0 if tracing is off.
+     */
+    static int beginAsync(String name) {
+        if (!isEnabled()) {
+            return 0;
+        }
+        int cookie;
+        do {
+            cookie = sNextCookie.incrementAndGet();
+        } while (cookie == 0);
+        try {
+            sAsyncTraceBegin.invoke(null, TRACE_TAG_APP, name, cookie);
+        } catch (Exception e) {
+            return 0;
+        }
+        return cookie;
+    }
+
+    static void endAsync(String name, int cookie) {
+        if (cookie == 0) {
+            return;
+        }
+        try {
+            sAsyncTraceEnd.invoke(null, TRACE_TAG_APP, name, cookie);
+        } catch (Exception e) {
+            // ignore
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.oginotihiro.snackbar;
+
+import java.util.ArrayDeque;
+
+/**
+ * Rate limit of one Snackbar channel: {@code permits} Snackbars per {@code windowMs}, refilled
+ * one token at a time. Records held back by {@link Snackbar#RATE_LIMIT_DELAY} wait in
+ * {@link #pending} until a token is available.
+ */
+final class TokenBucket {
+    final String channel;
+    final int permits;
+    final long windowMs;
+    final int policy;
+    final ArrayDeque<SnackbarManager.SnackbarRecord> pending;
+
+    private final long mRefillIntervalMs;
+    private int mTokens;
+    private long mLastRefillMs;
+
+    // Set by the manager, releases pending records when tokens come back
+    Runnable releaseTask;
+
+    long admittedCount;
+    long rejectedCount;
+
+    TokenBucket(String channel, int permits, long windowMs, int policy, long nowMs) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be > 0");
+        }
+        if (windowMs <= 0) {
+            throw new IllegalArgumentException("windowMs must be > 0");
+        }
+        this.channel = channel;
+        this.permits = permits;
+        this.windowMs = windowMs;
+        this.policy = policy;
+        this.pending = new ArrayDeque<>(permits);
+        mRefillIntervalMs = Math.max(1, windowMs / permits);
+        mTokens = permits;
+        mLastRefillMs = nowMs;
+    }
+
+    private void refill(long nowMs) {
+        long elapsed = nowMs - mLastRefillMs;
+        if (elapsed < mRefillIntervalMs) {
+            return;
+        }
+        long tokens = mTokens + elapsed / mRefillIntervalMs;
+        if (tokens >= permits) {
+            mTokens = permits;
+            mLastRefillMs = nowMs;
+        } else {
+            mTokens = (int) tokens;
+            mLastRefillMs += (elapsed / mRefillIntervalMs) * mRefillIntervalMs;
+        }
+    }
+
+    /**
+     * Take a token if one is available.
+     */
+    boolean tryAcquire(long nowMs) {
+        refill(nowMs);
+        if (mTokens > 0) {
+            mTokens--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns how long until the next token is available, 0 if one already is.
+     */
+    long delayUntilNextToken(long nowMs) {
+        refill(nowMs);
+        if (mTokens > 0) {
+            return 0;
+        }
+        return mLastRefillMs + mRefillIntervalMs - nowMs;
+    }
+
+    /**
+     * Shift the refill time by {@code deltaMs}, when moving to a clock with another origin.
+     */
+    void rebase(long deltaMs) {
+        mLastRefillMs += deltaMs;
+    }
+
+    /**
+     * Pending records are bounded to one window's worth of Snackbars.
+     */
+    boolean isPendingFull() {
+        return pending.size() >= permits;
+    }
+}
@@ -0,0 +1,143 @@
+package com.oginotihiro.snackbar;
+
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * {@link SnackbarScheduler} on a virtual clock which only moves with {@link #advanceBy} and
+ * {@link #advanceTo}, for tests and simulations: minutes of timeouts and rate limits run in
+ * microseconds, always in the same order.
+ * <p>
+ * Tasks run on the thread moving the clock, by due time then in the order they were posted,
+ * and the clock reads the due time of each task while it runs. Thread safe.
+ */
+public final class VirtualTimeScheduler implements SnackbarScheduler {
+    private static final class Task implements Comparable<Task> {
+        final Runnable runnable;
+        final long dueMs;
+        final long sequence;
+
+        Task(Runnable runnable, long dueMs, long sequence) {
+            this.runnable = runnable;
+            this.dueMs = dueMs;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (dueMs != other.dueMs) {
+                return dueMs < other.dueMs ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : sequence > other.sequence ? 1 : 0;
+        }
+    }
+
+    private final PriorityQueue<Task> mTasks = new PriorityQueue<>();
+    private long mNow;
+    private long mSequence;
+
+    public VirtualTimeScheduler() {
+        this(0);
+    }
+
+    /**
+     * @param startMs The time the clock starts at.
+     */
+    public VirtualTimeScheduler(long startMs) {
+        mNow = startMs;
+    }
+
+    @Override
+    public synchronized long now() {
+        return mNow;
+    }
+
+    @Override
+    public synchronized void postDelayed(Runnable task, long delayMs) {
+        mTasks.add(new Task(task, mNow + Math.max(0, delayMs), mSequence++));
+    }
+
+    @Override
+    public synchronized void cancel(Runnable task) {
+        final Iterator<Task> it = mTasks.iterator();
+        while (it.hasNext()) {
+            if (it.next().runnable == task) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Move the clock {@code ms} forward, running every task due on the way, including the ones
+     * they post.
+     */
+    public void advanceBy(long ms) {
+        if (ms < 0) {
+            throw new IllegalArgumentException("ms must be >= 0");
+        }
+        advanceTo(now() + ms);
+    }
+
+    /**
+     * Move the clock to {@code timeMs}, running every task due on the way, including the ones
+     * they post. The clock never goes back.
+     */
+    public void advanceTo(long timeMs) {
+        Task task;
+        while ((task = pollDue(timeMs)) != null) {
+            task.runnable.run();
+        }
+        synchronized (this) {
+            if (timeMs > mNow) {
+                mNow = timeMs;
+            }
+        }
+    }
+
+    /**
+     * Run the tasks due now, without moving the clock.
+     */
+    public void runDue() {
+        advanceTo(now());
+    }
+
+    /**
+     * Move the clock to each due time in turn until nothing is left, at most {@code maxTasks}
+     * tasks.
+     *
+     * @return How many tasks ran.
+     */
+    public int runAll(int maxTasks) {
+        int count = 0;
+        Task task;
+        while (count < maxTasks && (task = pollDue(Long.MAX_VALUE)) != null) {
+            task.runnable.run();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the time the next task is due, or {@link Long#MAX_VALUE} if none is pending.
+     */
+    public synchronized long nextDueTime() {
+        final Task next = mTasks.peek();
+        return next != null ? next.dueMs : Long.MAX_VALUE;
+    }
+
+    public synchronized int getPendingCount() {
+        return mTasks.size();
+    }
+
+    private synchronized Task pollDue(long timeMs) {
+        final Task next = mTasks.peek();
+        if (next == null || next.dueMs > timeMs) {
+            return null;
+        }
+        mTasks.poll();
+        if (next.dueMs > mNow) {
+            mNow = next.dueMs;
+        }
+        return next;
+    }
+}
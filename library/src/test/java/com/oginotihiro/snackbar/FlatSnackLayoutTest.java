@@ -0,0 +1,142 @@
+package com.oginotihiro.snackbar;
+
+import android.os.SystemClock;
+import android.support.v4.view.ViewCompat;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat.AccessibilityActionCompat;
+import android.view.ContextThemeWrapper;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a {@link FlatSnackLayout} shows the text and action set through the usual
+ * {@link Snackbar} API, does its own hit-testing of the action and exposes both to accessibility
+ * services.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class FlatSnackLayoutTest {
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    private final Object mScope = new Object();
+    private FrameLayout mContainer;
+    private int mClicks;
+    private int mDismissEvent = -1;
+
+    @Before
+    public void setUp() {
+        mContainer = new FrameLayout(
+                new ContextThemeWrapper(RuntimeEnvironment.application, R.style.Theme_AppCompat));
+    }
+
+    @Test
+    public void textAndAction_areDrawnByASingleView() {
+        Snackbar snackbar = make();
+        // Before the layout is made, applied when it is
+        snackbar.setText("changed");
+        frame();
+
+        FlatSnackLayout layout = (FlatSnackLayout) snackbar.getContentView();
+        assertEquals(0, layout.getChildCount());
+        assertEquals("changed", layout.getText().toString());
+        assertEquals("UNDO", layout.getAction());
+        assertEquals(WIDTH, layout.getWidth());
+        assertTrue(layout.getHeight() > 0);
+    }
+
+    @Test
+    public void tapOnAction_clicksAndDismisses() {
+        Snackbar snackbar = make();
+        frame();
+        View layout = snackbar.getContentView();
+
+        // The action sits against the end, the text before it
+        tap(layout, layout.getWidth() / 4, layout.getHeight() / 2);
+        assertEquals(0, mClicks);
+        tap(layout, layout.getWidth() - 30, layout.getHeight() / 2);
+        assertEquals(1, mClicks);
+
+        frame();
+        assertEquals(Snackbar.Callback.DISMISS_EVENT_ACTION, mDismissEvent);
+    }
+
+    @Test
+    public void accessibility_readsTheTextAndRunsTheAction() {
+        Snackbar snackbar = make();
+        frame();
+        View layout = snackbar.getContentView();
+
+        AccessibilityNodeInfoCompat info = AccessibilityNodeInfoCompat.obtain();
+        ViewCompat.onInitializeAccessibilityNodeInfo(layout, info);
+        assertEquals("message", info.getText().toString());
+        boolean found = false;
+        for (AccessibilityActionCompat action : info.getActionList()) {
+            if (action.getId() == R.id.snackbar_action) {
+                assertEquals("UNDO", action.getLabel().toString());
+                found = true;
+            }
+        }
+        assertTrue(found);
+        info.recycle();
+
+        assertTrue(ViewCompat.performAccessibilityAction(layout, R.id.snackbar_action, null));
+        assertEquals(1, mClicks);
+        frame();
+        assertEquals(Snackbar.Callback.DISMISS_EVENT_ACTION, mDismissEvent);
+    }
+
+    /**
+     * Show a Snackbar with an action, in its flat layout.
+     */
+    private Snackbar make() {
+        Snackbar snackbar = Snackbar.makeIn(mContainer, "message", Snackbar.BOTTOM_TOP, Snackbar.LENGTH_INDEFINITE)
+                .setScope(mScope)
+                .setFlatLayout(true)
+                .setAnimator(SnackbarAnimators.INSTANT)
+                .setAction("Undo", new View.OnClickListener() {
+                    @Override
+                    public void onClick(View v) {
+                        mClicks++;
+                    }
+                })
+                .setCallback(new Snackbar.Callback() {
+                    @Override
+                    public void onDismissed(Snackbar snackbar, int event) {
+                        mDismissEvent = event;
+                    }
+                });
+        snackbar.show();
+        return snackbar;
+    }
+
+    private static void tap(View view, float x, float y) {
+        final long now = SystemClock.uptimeMillis();
+        MotionEvent down = MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN, x, y, 0);
+        MotionEvent up = MotionEvent.obtain(now, now + 50, MotionEvent.ACTION_UP, x, y, 0);
+        view.dispatchTouchEvent(down);
+        view.dispatchTouchEvent(up);
+        down.recycle();
+        up.recycle();
+    }
+
+    private void frame() {
+        ShadowLooper.idleMainLooper(16, TimeUnit.MILLISECONDS);
+        mContainer.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mContainer.layout(0, 0, WIDTH, HEIGHT);
+    }
+}
@@ -0,0 +1,115 @@
+package com.oginotihiro.snackbar;
+
+import android.os.Build;
+import android.view.Choreographer;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that Snackbars show and dismiss below API 16, without the {@link Choreographer}.
+ * <p>
+ * Robolectric runs API 16 and above only, so the oldest one runs with {@code SDK_INT} set to 15:
+ * the classes every Snackbar goes through are also checked not to implement
+ * {@link Choreographer.FrameCallback} themselves, which Dalvik couldn't load before API 16.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 16)
+public class SnackbarBelowJellyBeanTest {
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    private final Object mScope = new Object();
+    private FrameLayout mContainer;
+    private int mShows;
+    private int mDismisses;
+
+    @Before
+    public void setUp() {
+        ReflectionHelpers.setStaticField(Build.VERSION.class, "SDK_INT",
+                Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1);
+        mContainer = new FrameLayout(
+                new ContextThemeWrapper(RuntimeEnvironment.application, R.style.Theme_AppCompat));
+        frame();
+    }
+
+    @After
+    public void tearDown() {
+        Snackbar.setFrameListener(null);
+        ReflectionHelpers.setStaticField(Build.VERSION.class, "SDK_INT", Build.VERSION_CODES.JELLY_BEAN);
+    }
+
+    @Test
+    public void hotPathClasses_areLoadableWithoutTheChoreographer() {
+        assertFalse(Choreographer.FrameCallback.class.isAssignableFrom(SnackbarDispatcher.class));
+        assertFalse(Choreographer.FrameCallback.class.isAssignableFrom(SnackbarFrameMonitor.class));
+    }
+
+    @Test
+    public void showAndDismiss_runFromMainThreadMessages() {
+        Snackbar snackbar = Snackbar.makeIn(mContainer, "message", Snackbar.BOTTOM_TOP,
+                Snackbar.LENGTH_INDEFINITE)
+                .setScope(mScope)
+                .setCallback(new Snackbar.Callback() {
+                    @Override
+                    public void onShow(Snackbar snackbar) {
+                        mShows++;
+                    }
+
+                    @Override
+                    public void onDismissed(Snackbar snackbar, int event) {
+                        mDismisses++;
+                    }
+                });
+        snackbar.show();
+        idle();
+        assertEquals(1, mShows);
+        assertTrue(snackbar.isShown());
+
+        snackbar.dismiss();
+        idle();
+        assertEquals(1, mDismisses);
+        assertFalse(snackbar.isShownOrQueued());
+        assertEquals(0, mContainer.getChildCount());
+    }
+
+    @Test
+    public void frameListener_isNeverCalled() {
+        Snackbar.setFrameListener(new SnackbarFrameListener() {
+            @Override
+            public void onAnimationFrames(boolean entering, int direction, int frames, int dropped,
+                                          long p50Nanos, long p95Nanos, long maxNanos) {
+                fail("frames measured below API 16");
+            }
+        });
+        showAndDismiss_runFromMainThreadMessages();
+    }
+
+    private void idle() {
+        // Long enough for the slide in or out to end
+        for (int i = 0; i < 30; i++) {
+            frame();
+        }
+    }
+
+    private void frame() {
+        ShadowLooper.idleMainLooper(16, TimeUnit.MILLISECONDS);
+        mContainer.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mContainer.layout(0, 0, WIDTH, HEIGHT);
+    }
+}
@@ -0,0 +1,58 @@
+package com.oginotihiro.snackbar;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts the bytes allocated by the thread driving the {@link SnackbarDispatcher}: once warmed
+ * up, posting and draining commands must not allocate.
+ */
+public class SnackbarDispatcherAllocationTest {
+    private static final int WARM_UP = 1000;
+    private static final int FRAMES = 100000;
+    private static final int COMMANDS_PER_FRAME = 4;
+    // Room for the measuring calls themselves, far below one object per frame
+    private static final long SLACK_BYTES = 4096;
+
+    @Test
+    public void steadyStateFrames_allocateNothing() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        SnackbarDispatcher dispatcher = SnackbarDispatcher.getInstance();
+        SnackbarManager manager = SnackbarManager.forScope(new Object());
+        // Never shown, so each timeout is a no-op once it reaches the manager
+        SnackbarManager.SnackbarRecord record = new SnackbarManager.SnackbarRecord(
+                Snackbar.LENGTH_SHORT, Snackbar.PRIORITY_NORMAL, null, null, null);
+        record.manager = manager;
+
+        runFrames(dispatcher, record, WARM_UP);
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        runFrames(dispatcher, record, FRAMES);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue("allocated " + allocated + " bytes over " + FRAMES + " frames",
+                allocated < SLACK_BYTES);
+    }
+
+    private static void runFrames(SnackbarDispatcher dispatcher,
+                                  SnackbarManager.SnackbarRecord record, int frames) {
+        for (int i = 0; i < frames; i++) {
+            for (int j = 0; j < COMMANDS_PER_FRAME; j++) {
+                dispatcher.post(record);
+            }
+            // Stands for the frame callback
+            dispatcher.run();
+        }
+    }
+}
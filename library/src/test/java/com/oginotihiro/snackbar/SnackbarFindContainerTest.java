@@ -0,0 +1,63 @@
+package com.oginotihiro.snackbar;
+
+import android.app.Activity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link Snackbar#findContainer(View)} doesn't return a cached parent once the view
+ * has been moved, also within the same window.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class SnackbarFindContainerTest {
+    private ViewGroup mDecor;
+    private ViewGroup mContent;
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        mDecor = (ViewGroup) activity.getWindow().getDecorView();
+        mContent = (ViewGroup) activity.findViewById(android.R.id.content);
+    }
+
+    @Test
+    public void viewMovedInSameWindow_getsItsNewParent() {
+        View view = new View(mContent.getContext());
+        mContent.addView(view);
+        assertNotNull(view.getWindowToken());
+        assertSame(mContent, Snackbar.findContainer(view));
+        // Cached from here on
+        assertSame(mContent, Snackbar.findContainer(view));
+
+        FrameLayout holder = new FrameLayout(mContent.getContext());
+        mContent.removeView(view);
+        holder.addView(view);
+        mDecor.addView(holder);
+        assertSame(view.getWindowToken(), mContent.getWindowToken());
+        assertNotSame(mContent, Snackbar.findContainer(view));
+    }
+
+    @Test
+    public void ancestorMoved_evictsTheParentOfItsDescendants() {
+        FrameLayout holder = new FrameLayout(mContent.getContext());
+        View view = new View(mContent.getContext());
+        holder.addView(view);
+        mContent.addView(holder);
+        assertSame(mContent, Snackbar.findContainer(view));
+
+        mContent.removeView(holder);
+        mDecor.addView(holder);
+        assertNotSame(mContent, Snackbar.findContainer(view));
+    }
+}
@@ -0,0 +1,88 @@
+package com.oginotihiro.snackbar;
+
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link Snackbar#setLayoutBeforeShow(boolean)} animates the view in on the frame it
+ * is added, at the bounds its parent then gives it.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class SnackbarLayoutBeforeShowTest {
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    private final Object mScope = new Object();
+    private FrameLayout mContainer;
+    private int mShows;
+
+    @Before
+    public void setUp() {
+        // Out of any window, so that nothing but the test lays it out
+        mContainer = new FrameLayout(
+                new ContextThemeWrapper(RuntimeEnvironment.application, R.style.Theme_AppCompat));
+        layoutContainer();
+    }
+
+    @Test
+    public void laidOutContainer_entersOnTheFrameOfTheShow() {
+        Snackbar snackbar = make(Snackbar.BOTTOM_TOP).setLayoutBeforeShow(true);
+        snackbar.show();
+        // Only the dispatcher's frame, no layout pass
+        ShadowLooper.idleMainLooper(16, TimeUnit.MILLISECONDS);
+
+        assertEquals(1, mShows);
+        View view = snackbar.getContentView();
+        assertEquals(WIDTH, view.getWidth());
+        assertTrue(view.getHeight() > 0);
+        assertEquals(HEIGHT, view.getBottom());
+
+        // The parent's own layout agrees
+        final int top = view.getTop();
+        layoutContainer();
+        assertEquals(top, view.getTop());
+        assertEquals(HEIGHT, view.getBottom());
+    }
+
+    @Test
+    public void topSnackbar_isLaidOutAgainstTheTop() {
+        Snackbar snackbar = make(Snackbar.TOP_BOTTOM).setLayoutBeforeShow(true);
+        snackbar.show();
+        ShadowLooper.idleMainLooper(16, TimeUnit.MILLISECONDS);
+
+        assertEquals(1, mShows);
+        assertEquals(0, snackbar.getContentView().getTop());
+    }
+
+    private Snackbar make(int direction) {
+        return Snackbar.makeIn(mContainer, "message", direction, Snackbar.LENGTH_INDEFINITE)
+                .setScope(mScope)
+                .setAnimator(SnackbarAnimators.INSTANT)
+                .setCallback(new Snackbar.Callback() {
+                    @Override
+                    public void onShow(Snackbar snackbar) {
+                        mShows++;
+                    }
+                });
+    }
+
+    private void layoutContainer() {
+        mContainer.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mContainer.layout(0, 0, WIDTH, HEIGHT);
+    }
+}
@@ -0,0 +1,126 @@
+package com.oginotihiro.snackbar;
+
+import android.app.Activity;
+import android.view.ContextThemeWrapper;
+import android.widget.FrameLayout;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a {@link Snackbar} bound with {@link Snackbar#bindTo(Activity)} lets its host be
+ * collected once destroyed, even while the Snackbar itself is still referenced.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class SnackbarLifecycleTest {
+    private static final int GC_ATTEMPTS = 20;
+
+    private final Object mScope = new Object();
+    // Outlives the hosts, as a leaky presenter would
+    private final List<Snackbar> mHeld = new ArrayList<>();
+    private int mMade;
+
+    @Test
+    public void destroyedHost_ofShownSnackbar_isCollectable() {
+        WeakReference<Activity> host = showInHost(true, true);
+
+        assertFalse(mHeld.get(0).isShownOrQueued());
+        assertCollected(host);
+    }
+
+    @Test
+    public void destroyedHost_ofQueuedSnackbar_isCollectableAndNeverShown() {
+        // Takes the only slot, from a host which stays alive
+        Activity other = Robolectric.setupActivity(Activity.class);
+        Snackbar first = make(newContainer(other));
+        first.show(Snackbar.PRIORITY_HIGH);
+        frame();
+        assertTrue(first.isShown());
+
+        WeakReference<Activity> host = showInHost(true, false);
+        assertFalse(mHeld.get(0).isShownOrQueued());
+
+        first.dismiss();
+        frame();
+        assertFalse(mHeld.get(0).isShown());
+        assertCollected(host);
+    }
+
+    @Test
+    public void unboundSnackbar_keepsItsHostAlive() {
+        WeakReference<Activity> host = showInHost(false, true);
+
+        // The reference the binding exists to drop, this is what the test above would catch
+        gc(host);
+        assertNotNull(host.get());
+    }
+
+    /**
+     * Show a Snackbar in a new host and destroy the host, keeping only the Snackbar.
+     */
+    private WeakReference<Activity> showInHost(boolean bind, boolean expectShown) {
+        ActivityController<Activity> controller =
+                Robolectric.buildActivity(Activity.class).create().start().resume();
+        Activity host = controller.get();
+        Snackbar snackbar = make(newContainer(host));
+        if (bind) {
+            snackbar.bindTo(host);
+        }
+        snackbar.show();
+        frame();
+        assertEquals(expectShown, snackbar.isShown());
+        mHeld.add(snackbar);
+
+        controller.pause().stop().destroy();
+        frame();
+        return new WeakReference<>(host);
+    }
+
+    private Snackbar make(FrameLayout container) {
+        return Snackbar.makeIn(container, "message " + mMade++, Snackbar.BOTTOM_TOP,
+                Snackbar.LENGTH_INDEFINITE)
+                .setScope(mScope)
+                .setAnimator(SnackbarAnimators.INSTANT);
+    }
+
+    private static FrameLayout newContainer(Activity host) {
+        FrameLayout container =
+                new FrameLayout(new ContextThemeWrapper(host, R.style.Theme_AppCompat));
+        host.setContentView(container);
+        return container;
+    }
+
+    private static void frame() {
+        ShadowLooper.idleMainLooper(16, TimeUnit.MILLISECONDS);
+    }
+
+    private static void assertCollected(WeakReference<?> reference) {
+        gc(reference);
+        assertNull("still reachable", reference.get());
+    }
+
+    private static void gc(WeakReference<?> reference) {
+        for (int i = 0; i < GC_ATTEMPTS && reference.get() != null; i++) {
+            System.gc();
+            System.runFinalization();
+            // Some pressure, some collectors only clear weak references when pressed
+            byte[][] garbage = new byte[64][];
+            for (int j = 0; j < garbage.length; j++) {
+                garbage[j] = new byte[64 * 1024];
+            }
+        }
+    }
+}
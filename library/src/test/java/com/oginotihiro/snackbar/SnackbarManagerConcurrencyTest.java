@@ -0,0 +1,162 @@
+package com.oginotihiro.snackbar;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Hammers a {@link SnackbarManager} from many threads, playing the part of the Snackbars, and
+ * checks that no record is lost, shown twice or dismissed twice.
+ */
+public class SnackbarManagerConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int SHOWS_PER_THREAD = 20000;
+    private static final int MAX_VISIBLE = 2;
+
+    private final ConcurrentLinkedQueue<TestCallback> mShown = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<TestCallback> mHidden = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mVisible = new AtomicInteger();
+    private final AtomicInteger mMaxVisibleSeen = new AtomicInteger();
+    private volatile Throwable mFailure;
+
+    private class TestCallback extends SnackbarManager.Callback {
+        final AtomicInteger shows = new AtomicInteger();
+        final AtomicInteger dismisses = new AtomicInteger();
+        final AtomicInteger hidden = new AtomicInteger();
+
+        @Override
+        void show() {
+            shows.incrementAndGet();
+            int visible = mVisible.incrementAndGet();
+            int max;
+            while (visible > (max = mMaxVisibleSeen.get())
+                    && !mMaxVisibleSeen.compareAndSet(max, visible)) {
+                // retry
+            }
+            // Like Snackbar, the view work happens later, outside of the manager's lock
+            mShown.add(this);
+        }
+
+        @Override
+        void dismiss(int event) {
+            dismisses.incrementAndGet();
+            if (shows.get() > 0) {
+                mHidden.add(this);
+            }
+        }
+
+        @Override
+        void coalesce(int count) {
+        }
+    }
+
+    @Test
+    public void concurrentShowAndDismiss_neverLosesNorDoublesRecords() throws Exception {
+        final SnackbarManager manager = SnackbarManager.forScope(new Object());
+        manager.setMaxVisible(MAX_VISIBLE);
+
+        final List<List<TestCallback>> perThread = new ArrayList<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final List<TestCallback> callbacks = new ArrayList<>(SHOWS_PER_THREAD);
+            perThread.add(callbacks);
+            final Random random = new Random(t);
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    try {
+                        for (int i = 0; i < SHOWS_PER_THREAD; i++) {
+                            TestCallback callback = new TestCallback();
+                            callbacks.add(callback);
+                            manager.show(Snackbar.LENGTH_SHORT, random.nextInt(3) - 1, null, null,
+                                    callback);
+                            // Hot read path
+                            manager.isCurrentOrNext(callback);
+                            step(manager, random);
+                        }
+                    } catch (Throwable e) {
+                        mFailure = e;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (mFailure != null) {
+            throw new AssertionError(mFailure);
+        }
+
+        // Dismiss whatever is left on screen until everything has gone through
+        List<TestCallback> all = new ArrayList<>();
+        for (List<TestCallback> callbacks : perThread) {
+            all.addAll(callbacks);
+        }
+        boolean busy = true;
+        while (busy) {
+            busy = false;
+            TestCallback callback;
+            while ((callback = mShown.poll()) != null) {
+                manager.onShown(callback);
+            }
+            for (TestCallback c : all) {
+                if (manager.isCurrent(c)) {
+                    manager.dismiss(c, Snackbar.Callback.DISMISS_EVENT_MANUAL);
+                    busy = true;
+                }
+            }
+            while ((callback = mHidden.poll()) != null) {
+                hide(manager, callback);
+                busy = true;
+            }
+        }
+
+        long shown = 0;
+        for (TestCallback callback : all) {
+            assertTrue("shown twice", callback.shows.get() <= 1);
+            assertTrue("dismissed twice", callback.dismisses.get() <= 1);
+            assertEquals("shown but not hidden", callback.shows.get(), callback.hidden.get());
+            assertFalse("still queued", manager.isCurrentOrNext(callback));
+            shown += callback.shows.get();
+        }
+        assertEquals("lost records", all.size(), shown + manager.getDroppedCount());
+        assertTrue("too many visible", mMaxVisibleSeen.get() <= MAX_VISIBLE);
+        assertEquals(0, manager.getQueueSize());
+    }
+
+    private void step(SnackbarManager manager, Random random) {
+        TestCallback callback = mShown.poll();
+        if (callback != null) {
+            manager.onShown(callback);
+            if (random.nextInt(4) == 0) {
+                manager.dismiss(callback, Snackbar.Callback.DISMISS_EVENT_MANUAL);
+            }
+            assertTrue(manager.isCurrent(callback) || callback.dismisses.get() > 0);
+        }
+        callback = mHidden.poll();
+        if (callback != null) {
+            hide(manager, callback);
+        }
+    }
+
+    private void hide(SnackbarManager manager, TestCallback callback) {
+        callback.hidden.incrementAndGet();
+        mVisible.decrementAndGet();
+        manager.onDismissed(callback);
+    }
+}
@@ -0,0 +1,192 @@
+package com.oginotihiro.snackbar;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives a {@link SnackbarManager} on a {@link VirtualTimeScheduler} through long random
+ * sequences of shows, dismisses, touches, frames and timeouts, and checks after every step that
+ * no more Snackbars are current than slots, and that every shown Snackbar is dismissed exactly
+ * once.
+ * <p>
+ * The view side is played by the harness: callbacks are queued like the dispatcher's commands
+ * and drained on frame steps, outside of the manager's lock. Runs
+ * {@code -Psnackbar.fuzz.iterations} steps, 200000 by default, from {@code -Psnackbar.fuzz.seed}.
+ */
+public class SnackbarManagerFuzzTest {
+    private static final int CALLBACKS = 32;
+    private static final String CHANNEL = "fuzz";
+    private static final int[] DURATIONS = {
+            Snackbar.LENGTH_SHORT, Snackbar.LENGTH_LONG, Snackbar.LENGTH_INDEFINITE, 1, 500, 4000
+    };
+
+    private final VirtualTimeScheduler mScheduler = new VirtualTimeScheduler();
+    private final SnackbarManager mManager = new SnackbarManager(null, mScheduler);
+    private final FuzzCallback[] mCallbacks = new FuzzCallback[CALLBACKS];
+    // Commands for the view side, drained on frame steps
+    private ArrayList<Runnable> mCommands = new ArrayList<>();
+    private ArrayList<Runnable> mDraining = new ArrayList<>();
+    private int mMaxVisible = 1;
+    private int mOnScreen;
+
+    private class FuzzCallback extends SnackbarManager.Callback {
+        final int index;
+        boolean onScreen;
+        boolean dismissPending;
+        int shows;
+        int shownDismisses;
+
+        FuzzCallback(int index) {
+            this.index = index;
+        }
+
+        @Override
+        void show() {
+            assertFalse("shown twice: " + index, onScreen);
+            onScreen = true;
+            shows++;
+            mOnScreen++;
+            assertTrue(mOnScreen + " on screen", mOnScreen <= mMaxVisible);
+            mCommands.add(new Runnable() {
+                @Override
+                public void run() {
+                    // Entry animation done
+                    mManager.onShown(FuzzCallback.this);
+                }
+            });
+        }
+
+        @Override
+        void dismiss(final int event) {
+            if (record == null || record.state != SnackbarManager.SnackbarRecord.STATE_DISMISSING) {
+                // Dismissed while queued, or merged into another one, never on screen
+                assertTrue(record == null || record.state == SnackbarManager.SnackbarRecord.STATE_DONE);
+                assertFalse("queued while shown: " + index, onScreen);
+                return;
+            }
+            assertTrue("dismissed while not shown: " + index, onScreen);
+            assertFalse("dismissed twice: " + index, dismissPending);
+            dismissPending = true;
+            shownDismisses++;
+            mCommands.add(new Runnable() {
+                @Override
+                public void run() {
+                    // Exit animation done
+                    onScreen = false;
+                    dismissPending = false;
+                    mOnScreen--;
+                    mManager.onDismissed(FuzzCallback.this);
+                }
+            });
+        }
+
+        @Override
+        void coalesce(int count) {
+        }
+    }
+
+    @Test
+    public void randomSequences_keepInvariants() {
+        final long seed = Long.getLong("snackbar.fuzz.seed", 20171219L);
+        final int iterations = Integer.getInteger("snackbar.fuzz.iterations", 200000);
+        final Random random = new Random(seed);
+        for (int i = 0; i < CALLBACKS; i++) {
+            mCallbacks[i] = new FuzzCallback(i);
+        }
+        mManager.setQueueCapacity(8, Snackbar.OVERFLOW_DROP_OLDEST);
+
+        for (int i = 0; i < iterations; i++) {
+            try {
+                step(random);
+                checkCurrent();
+            } catch (AssertionError e) {
+                throw new AssertionError("seed " + seed + ", step " + i + ": " + e.getMessage(), e);
+            }
+        }
+        drain();
+
+        assertEquals(0, mOnScreen);
+        assertEquals(0, mManager.getQueueSize());
+        for (FuzzCallback callback : mCallbacks) {
+            assertFalse(mManager.isCurrentOrNext(callback));
+            assertFalse(callback.onScreen);
+            assertEquals("callback " + callback.index, callback.shows, callback.shownDismisses);
+        }
+    }
+
+    private void step(Random random) {
+        final FuzzCallback callback = mCallbacks[random.nextInt(CALLBACKS)];
+        final int op = random.nextInt(100);
+        if (op < 30) {
+            final int duration = DURATIONS[random.nextInt(DURATIONS.length)];
+            final int priority = random.nextInt(3) - 1;
+            final Object coalesceKey = random.nextInt(4) == 0 ? random.nextInt(4) : null;
+            final String channel = random.nextInt(3) == 0 ? CHANNEL : null;
+            mManager.show(duration, priority, coalesceKey, channel, callback);
+        } else if (op < 45) {
+            mManager.dismiss(callback, random.nextInt(4));
+        } else if (op < 55) {
+            // A touch holds the timeout until released
+            mManager.cancelTimeout(callback);
+            if (random.nextBoolean()) {
+                mManager.restoreTimeout(callback);
+            }
+        } else if (op < 75) {
+            frame();
+        } else if (op < 90) {
+            mScheduler.advanceBy(random.nextInt(2000));
+        } else if (op < 95) {
+            mMaxVisible = 1 + random.nextInt(3);
+            mManager.setMaxVisible(mMaxVisible);
+        } else if (random.nextBoolean()) {
+            mManager.setChannelRateLimit(CHANNEL, 1 + random.nextInt(3), 100 + random.nextInt(2000),
+                    random.nextInt(3));
+        } else {
+            mManager.clearChannelRateLimit(CHANNEL);
+        }
+    }
+
+    private void frame() {
+        final ArrayList<Runnable> commands = mCommands;
+        mCommands = mDraining;
+        mDraining = commands;
+        for (int i = 0; i < commands.size(); i++) {
+            commands.get(i).run();
+        }
+        commands.clear();
+    }
+
+    private void checkCurrent() {
+        int current = 0;
+        for (FuzzCallback callback : mCallbacks) {
+            if (mManager.isCurrent(callback)) {
+                current++;
+            }
+        }
+        // Shrinking the slots doesn't remove Snackbars already shown, so the bound is checked
+        // when each one is shown
+        assertEquals(mOnScreen, current);
+    }
+
+    /**
+     * Dismiss everything and run frames and timers until nothing is left.
+     */
+    private void drain() {
+        mManager.clearChannelRateLimit(CHANNEL);
+        for (int round = 0; round < 1000; round++) {
+            for (FuzzCallback callback : mCallbacks) {
+                mManager.dismiss(callback, Snackbar.Callback.DISMISS_EVENT_MANUAL);
+            }
+            frame();
+            mScheduler.runAll(1000);
+            if (mCommands.isEmpty() && mOnScreen == 0 && mManager.getQueueSize() == 0) {
+                return;
+            }
+        }
+        fail("still busy after draining");
+    }
+}
@@ -0,0 +1,93 @@
+package com.oginotihiro.snackbar;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how a {@link SnackbarManager} merges and reorders Snackbars shown again while queued,
+ * and tells those merged into another one.
+ */
+public class SnackbarManagerShowTest {
+    private static final String KEY = "0:message";
+
+    private SnackbarManager mManager;
+
+    private class TestCallback extends SnackbarManager.Callback {
+        int coalescedCount = 1;
+        int dismissEvent = -1;
+
+        @Override
+        void show() {
+            // No entry animation
+            mManager.onShown(this);
+        }
+
+        @Override
+        void dismiss(int event) {
+            dismissEvent = event;
+            // No exit animation
+            mManager.onDismissed(this);
+        }
+
+        @Override
+        void coalesce(int count) {
+            coalescedCount = count;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        mManager = new SnackbarManager(null, new VirtualTimeScheduler());
+    }
+
+    @Test
+    public void showAgainWhileQueued_isNotMergedIntoItself() {
+        TestCallback current = new TestCallback();
+        mManager.show(Snackbar.LENGTH_INDEFINITE, Snackbar.PRIORITY_HIGH, null, null, current);
+        TestCallback queued = new TestCallback();
+        mManager.show(Snackbar.LENGTH_INDEFINITE, Snackbar.PRIORITY_LOW, KEY, null, queued);
+
+        mManager.show(Snackbar.LENGTH_INDEFINITE, Snackbar.PRIORITY_LOW, KEY, null, queued);
+
+        assertEquals(1, queued.coalescedCount);
+        assertEquals(1, current.coalescedCount);
+        assertEquals(1, mManager.getQueueSize());
+    }
+
+    @Test
+    public void showAgainWhileQueued_updatesThePriority() {
+        TestCallback current = new TestCallback();
+        mManager.show(Snackbar.LENGTH_INDEFINITE, Snackbar.PRIORITY_HIGH, null, null, current);
+        TestCallback low = new TestCallback();
+        mManager.show(Snackbar.LENGTH_INDEFINITE, Snackbar.PRIORITY_LOW, KEY, null, low);
+        TestCallback normal = new TestCallback();
+        mManager.show(Snackbar.LENGTH_INDEFINITE, Snackbar.PRIORITY_NORMAL, null, null, normal);
+
+        // Now ahead of the normal one
+        mManager.show(Snackbar.LENGTH_INDEFINITE, Snackbar.PRIORITY_HIGH, KEY, null, low);
+        mManager.dismiss(current, Snackbar.Callback.DISMISS_EVENT_MANUAL);
+
+        assertTrue(mManager.isCurrent(low));
+        assertFalse(mManager.isCurrent(normal));
+        assertEquals(1, low.coalescedCount);
+    }
+
+    @Test
+    public void identicalSnackbar_isMergedIntoTheQueuedOne() {
+        TestCallback current = new TestCallback();
+        mManager.show(Snackbar.LENGTH_INDEFINITE, Snackbar.PRIORITY_HIGH, null, null, current);
+        TestCallback queued = new TestCallback();
+        mManager.show(Snackbar.LENGTH_INDEFINITE, Snackbar.PRIORITY_LOW, KEY, null, queued);
+
+        TestCallback merged = new TestCallback();
+        mManager.show(Snackbar.LENGTH_INDEFINITE, Snackbar.PRIORITY_LOW, KEY, null, merged);
+
+        assertEquals(2, queued.coalescedCount);
+        assertEquals(1, mManager.getQueueSize());
+        // Told it won't be shown
+        assertEquals(Snackbar.Callback.DISMISS_EVENT_CONSECUTIVE, merged.dismissEvent);
+        assertEquals(-1, queued.dismissEvent);
+    }
+}
@@ -0,0 +1,137 @@
+package com.oginotihiro.snackbar;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives the timeouts and rate limits of a {@link SnackbarManager} on a
+ * {@link VirtualTimeScheduler}.
+ */
+public class SnackbarManagerTimeoutTest {
+    private static final int SHORT_DURATION_MS = 1500;
+    private static final int LONG_DURATION_MS = 2750;
+
+    private VirtualTimeScheduler mScheduler;
+    private SnackbarManager mManager;
+    private final List<TestCallback> mShown = new ArrayList<>();
+
+    private class TestCallback extends SnackbarManager.Callback {
+        int dismissEvent = -1;
+        long shownAt = -1;
+
+        @Override
+        void show() {
+            shownAt = mScheduler.now();
+            mShown.add(this);
+            // No entry animation
+            mManager.onShown(this);
+        }
+
+        @Override
+        void dismiss(int event) {
+            dismissEvent = event;
+            // No exit animation
+            mManager.onDismissed(this);
+        }
+
+        @Override
+        void coalesce(int count) {
+        }
+    }
+
+    @Before
+    public void setUp() {
+        mScheduler = new VirtualTimeScheduler();
+        mManager = new SnackbarManager(null, mScheduler);
+    }
+
+    @Test
+    public void shortSnackbar_timesOutAfterShortDuration() {
+        TestCallback callback = new TestCallback();
+        mManager.show(Snackbar.LENGTH_SHORT, callback);
+
+        mScheduler.advanceBy(SHORT_DURATION_MS - 1);
+        assertTrue(mManager.isCurrent(callback));
+
+        mScheduler.advanceBy(1);
+        assertFalse(mManager.isCurrentOrNext(callback));
+        assertEquals(Snackbar.Callback.DISMISS_EVENT_TIMEOUT, callback.dismissEvent);
+    }
+
+    @Test
+    public void restoreTimeout_restartsTheCountdown() {
+        TestCallback callback = new TestCallback();
+        mManager.show(Snackbar.LENGTH_SHORT, callback);
+
+        mScheduler.advanceBy(1000);
+        mManager.cancelTimeout(callback);
+        mScheduler.advanceBy(10000);
+        assertTrue(mManager.isCurrent(callback));
+
+        mManager.restoreTimeout(callback);
+        mScheduler.advanceBy(SHORT_DURATION_MS - 1);
+        assertTrue(mManager.isCurrent(callback));
+        mScheduler.advanceBy(1);
+        assertFalse(mManager.isCurrent(callback));
+    }
+
+    @Test
+    public void longSession_timesOutEverySnackbarOnTime() {
+        final int count = 1000;
+        List<TestCallback> callbacks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            TestCallback callback = new TestCallback();
+            callbacks.add(callback);
+            mManager.show(Snackbar.LENGTH_LONG, callback);
+            mScheduler.runAll(Integer.MAX_VALUE);
+        }
+
+        // Close to an hour of Snackbars
+        assertEquals((long) count * LONG_DURATION_MS, mScheduler.now());
+        assertEquals(callbacks, mShown);
+        for (int i = 0; i < count; i++) {
+            assertEquals((long) i * LONG_DURATION_MS, callbacks.get(i).shownAt);
+            assertEquals(Snackbar.Callback.DISMISS_EVENT_TIMEOUT, callbacks.get(i).dismissEvent);
+        }
+    }
+
+    @Test
+    public void delayedChannel_releasesOnePerInterval() {
+        mManager.setMaxVisible(10);
+        mManager.setChannelRateLimit("c", 1, 1000, Snackbar.RATE_LIMIT_DELAY);
+        TestCallback first = new TestCallback();
+        TestCallback second = new TestCallback();
+        mManager.show(Snackbar.LENGTH_INDEFINITE, Snackbar.PRIORITY_NORMAL, null, "c", first);
+        mManager.show(Snackbar.LENGTH_INDEFINITE, Snackbar.PRIORITY_NORMAL, null, "c", second);
+
+        assertTrue(mManager.isCurrent(first));
+        assertFalse(mManager.isCurrent(second));
+
+        mScheduler.advanceBy(999);
+        assertFalse(mManager.isCurrent(second));
+        mScheduler.advanceBy(1);
+        assertTrue(mManager.isCurrent(second));
+        assertEquals(1000, second.shownAt);
+    }
+
+    @Test
+    public void setScheduler_keepsTheTimeLeft() {
+        TestCallback callback = new TestCallback();
+        mManager.show(Snackbar.LENGTH_SHORT, callback);
+        mScheduler.advanceBy(1000);
+
+        VirtualTimeScheduler other = new VirtualTimeScheduler(50000);
+        mManager.setScheduler(other);
+        assertEquals(0, mScheduler.getPendingCount());
+
+        other.advanceBy(SHORT_DURATION_MS - 1000 - 1);
+        assertTrue(mManager.isCurrent(callback));
+        other.advanceBy(1);
+        assertFalse(mManager.isCurrent(callback));
+    }
+}
@@ -0,0 +1,105 @@
+package com.oginotihiro.snackbar;
+
+import android.graphics.Color;
+import android.view.ContextThemeWrapper;
+import android.view.Gravity;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that content views only go back to the {@link SnackbarLayoutPool} when asked to, and
+ * that a recycled custom content view fails the next {@link Snackbar#show()} right away.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class SnackbarRecycleTest {
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    private final Object mScope = new Object();
+    private FrameLayout mContainer;
+
+    @Before
+    public void setUp() {
+        mContainer = new FrameLayout(
+                new ContextThemeWrapper(RuntimeEnvironment.application, R.style.Theme_AppCompat));
+    }
+
+    @Test
+    public void styledContentView_isNotHandedToTheNextSnackbar() {
+        Snackbar first = make("first");
+        View styled = first.getContentView();
+        styled.setBackgroundColor(Color.RED);
+        showAndDismiss(first);
+
+        Snackbar second = make("second");
+        assertNotSame(styled, second.getContentView());
+        // Still its own, for the next show
+        assertSame(styled, first.getContentView());
+    }
+
+    @Test
+    public void recycledContentView_isHandedToTheNextSnackbar() {
+        Snackbar first = make("first").setRecycleContentView(true);
+        View view = first.getContentView();
+        showAndDismiss(first);
+
+        assertSame(view, make("second").getContentView());
+    }
+
+    @Test
+    public void recycledCustomContentView_failsTheNextShow() {
+        Snackbar snackbar = Snackbar.makeIn(mContainer, new DefaultSnackLayout(mContainer.getContext(),
+                Gravity.BOTTOM), Snackbar.BOTTOM_TOP, Snackbar.LENGTH_INDEFINITE, 0, 0)
+                .setScope(mScope)
+                .setAnimator(SnackbarAnimators.INSTANT)
+                .setRecycleContentView(true);
+        showAndDismiss(snackbar);
+
+        try {
+            snackbar.show();
+            fail("shown without a content view");
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            snackbar.setRecycleContentView(true);
+            fail("recycling a content view already recycled");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    private Snackbar make(String text) {
+        return Snackbar.makeIn(mContainer, text, Snackbar.BOTTOM_TOP, Snackbar.LENGTH_INDEFINITE)
+                .setScope(mScope)
+                .setFlatLayout(false)
+                .setAnimator(SnackbarAnimators.INSTANT);
+    }
+
+    private void showAndDismiss(Snackbar snackbar) {
+        snackbar.show();
+        frame();
+        assertTrue(snackbar.isShown());
+        snackbar.dismiss();
+        frame();
+        assertFalse(snackbar.isShownOrQueued());
+    }
+
+    private void frame() {
+        ShadowLooper.idleMainLooper(16, TimeUnit.MILLISECONDS);
+        mContainer.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mContainer.layout(0, 0, WIDTH, HEIGHT);
+    }
+}
@@ -0,0 +1,234 @@
+package com.oginotihiro.snackbar;
+
+import android.app.Activity;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+
+import static org.junit.Assert.*;
+
+/**
+ * Counts the objects allocated by whole show and dismiss cycles of a Snackbar, through
+ * {@link Snackbar#show()}, the dispatcher, showView, hideView and the animator listeners, once
+ * warmed up.
+ * <p>
+ * Objects are counted per class from a heap histogram which includes unreachable ones, taken
+ * before and after the cycles, and retried if a garbage collection ran in between. A cycle must
+ * allocate no instance of the library's own classes, e.g. a listener, runnable or lambda made
+ * per show, but one {@code SnackbarManager.SnackbarRecord}, its state being read without a lock
+ * by other threads. It must not box more {@code Long}s or {@code Integer}s than the same frames
+ * without any Snackbar either. What the framework allocates for the slide in and out, and
+ * Robolectric for each message posted, which the framework pools on a device, isn't counted.
+ * <p>
+ * The objects a cycle must reuse, the content view and its animation bridge, are also checked
+ * by identity.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class SnackbarShowAllocationTest {
+    private static final int FRAME_MS = 16;
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    // Long enough for the slide in or out to end
+    private static final int FRAMES_PER_PHASE = 30;
+    private static final int WARM_UP = 20;
+    private static final int CYCLES = 50;
+    // Histograms taken again when a garbage collection ran during the cycles
+    private static final int ATTEMPTS = 5;
+    private static final String PACKAGE = "com.oginotihiro.snackbar.";
+    private static final String RECORD = PACKAGE + "SnackbarManager$SnackbarRecord";
+    private static final String[] BOXES = {"java.lang.Long", "java.lang.Integer"};
+
+    private final Object mScope = new Object();
+    private FrameLayout mContainer;
+    private int mShows;
+    private int mDismisses;
+    // Content view of the latest show, handed back to the pool once dismissed
+    private Snackbar.SnackbarLayoutBase mShownView;
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        mContainer = new FrameLayout(new ContextThemeWrapper(activity, R.style.Theme_AppCompat));
+        activity.setContentView(mContainer);
+        frame();
+    }
+
+    @Test
+    public void steadyStateShowAndDismiss_allocateNoLibraryObject() throws Exception {
+        Assume.assumeNotNull(histogram());
+
+        Snackbar snackbar = Snackbar.makeIn(mContainer, "message", Snackbar.BOTTOM_TOP,
+                Snackbar.LENGTH_INDEFINITE)
+                .setScope(mScope)
+                .setRecycleContentView(true)
+                .setCallback(new Snackbar.Callback() {
+                    @Override
+                    public void onShow(Snackbar snackbar) {
+                        mShows++;
+                        mShownView = snackbar.getContentView();
+                    }
+
+                    @Override
+                    public void onDismissed(Snackbar snackbar, int event) {
+                        mDismisses++;
+                    }
+                });
+        for (int i = 0; i < WARM_UP; i++) {
+            cycle(snackbar);
+        }
+        final View view = mShownView;
+        assertNotNull(view);
+        final Object bridge = mShownView.getAnimationBridge();
+
+        Map<String, Long> idle = null;
+        Map<String, Long> cycles = null;
+        for (int attempt = 0; attempt < ATTEMPTS && cycles == null; attempt++) {
+            idle = measure(null);
+            cycles = idle != null ? measure(snackbar) : null;
+        }
+        Assume.assumeNotNull(cycles);
+
+        assertTrue(mShows >= WARM_UP + CYCLES);
+        assertEquals(mShows, mDismisses);
+        // Taken back from the pool each time, never inflated again
+        assertSame(view, mShownView);
+        assertSame(bridge, mShownView.getAnimationBridge());
+
+        final StringBuilder allocated = new StringBuilder();
+        for (Map.Entry<String, Long> entry : cycles.entrySet()) {
+            final String name = entry.getKey();
+            if (name.startsWith(PACKAGE)) {
+                final long expected = name.equals(RECORD) ? CYCLES : 0;
+                if (entry.getValue() != expected) {
+                    allocated.append(' ').append(name).append(" x").append(entry.getValue());
+                }
+            }
+        }
+        for (String box : BOXES) {
+            final long extra = count(cycles, box) - count(idle, box);
+            if (extra > 0) {
+                allocated.append(' ').append(box).append(" x").append(extra);
+            }
+        }
+        assertEquals("allocated over " + CYCLES + " cycles:" + allocated, "", allocated.toString());
+    }
+
+    /**
+     * Count the objects allocated by {@link #CYCLES} cycles of {@code snackbar}, or the same
+     * frames without any if {@code null}.
+     *
+     * @return The count per class, or {@code null} if a garbage collection ran meanwhile.
+     */
+    private Map<String, Long> measure(Snackbar snackbar) throws Exception {
+        final long collections = collectionCount();
+        final Map<String, long[]> before = histogram();
+        for (int i = 0; i < CYCLES; i++) {
+            if (snackbar != null) {
+                cycle(snackbar);
+            } else {
+                idle(FRAMES_PER_PHASE * 2);
+            }
+        }
+        final Map<String, long[]> after = histogram();
+        if (before == null || after == null || collectionCount() != collections) {
+            return null;
+        }
+        // Boxes from here on, once both histograms are taken
+        final Map<String, Long> delta = new HashMap<>();
+        for (Map.Entry<String, long[]> entry : after.entrySet()) {
+            final long[] previous = before.get(entry.getKey());
+            final long count = entry.getValue()[0] - (previous != null ? previous[0] : 0);
+            if (count != 0) {
+                delta.put(entry.getKey(), count);
+            }
+        }
+        return delta;
+    }
+
+    private static long count(Map<String, Long> delta, String name) {
+        final Long count = delta.get(name);
+        return count != null ? count : 0;
+    }
+
+    private static long collectionCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += bean.getCollectionCount();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of objects per class in the heap, unreachable ones included, or
+     * {@code null} if the JVM can't tell. Counts are kept in arrays, boxing them would add to the
+     * boxes counted.
+     */
+    private static Map<String, long[]> histogram() {
+        final String text;
+        try {
+            text = (String) ManagementFactory.getPlatformMBeanServer().invoke(
+                    new ObjectName("com.sun.management:type=DiagnosticCommand"), "gcClassHistogram",
+                    new Object[]{new String[]{"-all"}}, new String[]{String[].class.getName()});
+        } catch (Exception e) {
+            return null;
+        }
+        final Map<String, long[]> histogram = new HashMap<>();
+        // "  num:  #instances  #bytes  class name (module)", a class may be loaded more than once
+        for (String line : text.split("\n")) {
+            final String[] fields = line.trim().split("\\s+");
+            if (fields.length >= 4 && fields[0].endsWith(":")) {
+                final long instances;
+                try {
+                    instances = Long.parseLong(fields[1]);
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                final long[] count = histogram.get(fields[3]);
+                if (count != null) {
+                    count[0] += instances;
+                } else {
+                    histogram.put(fields[3], new long[]{instances});
+                }
+            }
+        }
+        return histogram;
+    }
+
+    private void cycle(Snackbar snackbar) {
+        snackbar.show();
+        idle(FRAMES_PER_PHASE);
+        snackbar.dismiss();
+        idle(FRAMES_PER_PHASE);
+    }
+
+    private void idle(int frames) {
+        for (int i = 0; i < frames; i++) {
+            frame();
+        }
+    }
+
+    private void frame() {
+        ShadowLooper.idleMainLooper(FRAME_MS, TimeUnit.MILLISECONDS);
+        mContainer.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mContainer.layout(0, 0, WIDTH, HEIGHT);
+    }
+}
@@ -0,0 +1,232 @@
+package com.oginotihiro.snackbar;
+
+import android.app.Activity;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Soaks whole {@link Snackbar}s, views included, with random sequences of make, show, dismiss,
+ * setDuration, detached views, frames and timeouts, on Robolectric's virtual main looper.
+ * <p>
+ * Checks that a single Snackbar is current at a time, that every Snackbar shown is dismissed
+ * exactly once, that no Snackbar is dismissed more often than it was shown or queued, and that
+ * no view is left in the parent once everything is dismissed.
+ * <p>
+ * Runs {@code -Psnackbar.soak.iterations} steps from {@code -Psnackbar.soak.seed}. The default,
+ * 20000, keeps every build short; the long soak, {@code -Psnackbar.soak.long}, runs 1000000 of
+ * them, about 300000 shows.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class SnackbarSoakTest {
+    private static final int SNACKBARS = 8;
+    private static final int FRAME_MS = 16;
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    private static final int[] DURATIONS = {
+            Snackbar.LENGTH_SHORT, Snackbar.LENGTH_LONG, Snackbar.LENGTH_INDEFINITE, 50, 800
+    };
+
+    private final Object mScope = new Object();
+    private final Snackbar[] mSnackbars = new Snackbar[SNACKBARS];
+    private final SoakCallback[] mCallbacks = new SoakCallback[SNACKBARS];
+    private FrameLayout mContainer;
+    private int mOnScreen;
+
+    private class SoakCallback extends Snackbar.Callback {
+        boolean onScreen;
+        int shows;
+        int shownDismisses;
+        // Shows which queued a new Snackbar, each one owes a single onDismissed
+        int activations;
+        int dismisses;
+
+        @Override
+        public void onShow(Snackbar snackbar) {
+            assertFalse("shown twice", onScreen);
+            onScreen = true;
+            shows++;
+            mOnScreen++;
+            assertTrue(mOnScreen + " on screen", mOnScreen <= 1);
+        }
+
+        @Override
+        public void onDismissed(Snackbar snackbar, int event) {
+            // Dismissed while on screen, or while queued or entering, but always once per show
+            assertTrue("dismissed more often than shown", dismisses < activations);
+            dismisses++;
+            if (onScreen) {
+                onScreen = false;
+                shownDismisses++;
+                mOnScreen--;
+            }
+        }
+    }
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        mContainer = new FrameLayout(new ContextThemeWrapper(activity, R.style.Theme_AppCompat));
+        activity.setContentView(mContainer);
+        for (int i = 0; i < SNACKBARS; i++) {
+            mCallbacks[i] = new SoakCallback();
+        }
+    }
+
+    @Test
+    public void randomSequences_keepInvariants() {
+        final long seed = Long.getLong("snackbar.soak.seed", 20171214L);
+        final int iterations = Integer.getInteger("snackbar.soak.iterations", 20000);
+        final Random random = new Random(seed);
+
+        for (int i = 0; i < iterations; i++) {
+            try {
+                step(random);
+                checkCurrent();
+            } catch (AssertionError e) {
+                throw new AssertionError("seed " + seed + ", step " + i + ": " + e.getMessage(), e);
+            }
+        }
+        drain();
+
+        assertEquals(0, mOnScreen);
+        for (int i = 0; i < SNACKBARS; i++) {
+            if (mSnackbars[i] != null) {
+                assertFalse(mSnackbars[i].isShownOrQueued());
+            }
+            assertEquals("snackbar " + i, mCallbacks[i].shows, mCallbacks[i].shownDismisses);
+        }
+        for (int i = 0; i < mContainer.getChildCount(); i++) {
+            assertFalse("leaked " + mContainer.getChildAt(i),
+                    mContainer.getChildAt(i) instanceof Snackbar.SnackbarLayoutBase);
+        }
+    }
+
+    private void step(Random random) {
+        final int index = random.nextInt(SNACKBARS);
+        Snackbar snackbar = mSnackbars[index];
+        final int op = random.nextInt(100);
+        if (snackbar == null || (op < 10 && !snackbar.isShownOrQueued())) {
+            mSnackbars[index] = make(index, random);
+        } else if (op < 35) {
+            show(index, random.nextInt(3) - 1);
+        } else if (op < 50) {
+            snackbar.dismiss();
+        } else if (op < 55) {
+            // Applies from the next show, or right away to a shown one
+            snackbar.setDuration(DURATIONS[random.nextInt(DURATIONS.length)]);
+            show(index, Snackbar.PRIORITY_NORMAL);
+        } else if (op < 60) {
+            detach(snackbar);
+        } else if (op < 85) {
+            frame();
+        } else {
+            ShadowLooper.idleMainLooper(random.nextInt(3000), TimeUnit.MILLISECONDS);
+            frame();
+        }
+    }
+
+    private void show(int index, int priority) {
+        final Snackbar snackbar = mSnackbars[index];
+        final boolean wasQueued = snackbar.isShownOrQueued();
+        snackbar.show(priority);
+        if (!wasQueued) {
+            // Not updated in place: queued, or merged into another one and dismissed
+            mCallbacks[index].activations++;
+        }
+    }
+
+    private Snackbar make(int index, Random random) {
+        final int direction = random.nextInt(4);
+        final Snackbar snackbar = Snackbar.makeIn(mContainer, "message " + random.nextInt(4),
+                direction, DURATIONS[random.nextInt(DURATIONS.length)])
+                .setScope(mScope)
+                .setCallback(mCallbacks[index])
+                // Views going through the pool, or kept by their Snackbar
+                .setRecycleContentView(random.nextBoolean());
+        switch (random.nextInt(4)) {
+            case 0:
+                snackbar.setAnimator(SnackbarAnimators.INSTANT);
+                break;
+            case 1:
+                snackbar.setAnimator(SnackbarAnimators.NONE);
+                break;
+            case 2:
+                snackbar.setAnimator(SnackbarAnimators.FADE);
+                break;
+            default:
+                // The default slide
+                break;
+        }
+        return snackbar;
+    }
+
+    /**
+     * Remove the view of a shown Snackbar behind its back, as a host tearing down its views
+     * would.
+     */
+    private void detach(Snackbar snackbar) {
+        if (!snackbar.isShown()) {
+            return;
+        }
+        final View view = snackbar.getContentView();
+        if (view.getParent() instanceof ViewGroup) {
+            ((ViewGroup) view.getParent()).removeView(view);
+        }
+    }
+
+    private void frame() {
+        ShadowLooper.idleMainLooper(FRAME_MS, TimeUnit.MILLISECONDS);
+        mContainer.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mContainer.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    private void checkCurrent() {
+        int current = 0;
+        for (Snackbar snackbar : mSnackbars) {
+            if (snackbar != null && snackbar.isShown()) {
+                current++;
+            }
+        }
+        assertTrue(current + " current", current <= 1);
+    }
+
+    /**
+     * Dismiss everything and run frames until the views are gone.
+     */
+    private void drain() {
+        for (int round = 0; round < 1000; round++) {
+            boolean busy = false;
+            for (Snackbar snackbar : mSnackbars) {
+                if (snackbar != null && snackbar.isShownOrQueued()) {
+                    snackbar.dismiss();
+                    busy = true;
+                }
+            }
+            frame();
+            if (!busy && mOnScreen == 0) {
+                // Let parked and exiting views go
+                ShadowLooper.idleMainLooper(1000, TimeUnit.MILLISECONDS);
+                frame();
+                return;
+            }
+        }
+        fail("still busy after draining");
+    }
+}
@@ -0,0 +1,108 @@
+package com.oginotihiro.snackbar;
+
+import android.app.Activity;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks Snackbars shown several at a time, stacked against the same edge.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class SnackbarStackTest {
+    private static final int FRAME_MS = 16;
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    private final Object mScope = new Object();
+    private FrameLayout mContainer;
+    private int mMade;
+
+    private static class TestCallback extends Snackbar.Callback {
+        int shows;
+        int dismissEvent = -1;
+
+        @Override
+        public void onShow(Snackbar snackbar) {
+            shows++;
+        }
+
+        @Override
+        public void onDismissed(Snackbar snackbar, int event) {
+            dismissEvent = event;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        mContainer = new FrameLayout(new ContextThemeWrapper(activity, R.style.Theme_AppCompat));
+        activity.setContentView(mContainer);
+        SnackbarManager.forScope(mScope).setMaxVisible(2);
+    }
+
+    @Test
+    public void entryCutShortByTheNextOne_stillEntersAndTimesOut() {
+        TestCallback first = new TestCallback();
+        make(Snackbar.BOTTOM_TOP, Snackbar.LENGTH_SHORT, first).show();
+        frame();
+        // Well within the entry animation
+        idle(100);
+
+        TestCallback second = new TestCallback();
+        make(Snackbar.BOTTOM_TOP, Snackbar.LENGTH_INDEFINITE, second).show();
+        frame();
+        assertEquals(1, first.shows);
+
+        idle(2000);
+        assertEquals(Snackbar.Callback.DISMISS_EVENT_TIMEOUT, first.dismissEvent);
+        assertEquals(1, second.shows);
+        assertEquals(-1, second.dismissEvent);
+    }
+
+    @Test
+    public void horizontalEntryCutShort_isPutBackInPlace() {
+        TestCallback first = new TestCallback();
+        Snackbar snackbar = make(Snackbar.LEFT_RIGHT, Snackbar.LENGTH_INDEFINITE, first);
+        snackbar.show();
+        frame();
+        idle(100);
+
+        make(Snackbar.BOTTOM_TOP, Snackbar.LENGTH_INDEFINITE, new TestCallback()).show();
+        frame();
+        idle(1000);
+        assertEquals(0f, snackbar.getContentView().getTranslationX(), 0f);
+    }
+
+    private Snackbar make(int direction, int duration, TestCallback callback) {
+        return Snackbar.makeIn(mContainer, "message " + mMade++, direction, duration)
+                .setScope(mScope)
+                .setCallback(callback);
+    }
+
+    private void idle(int ms) {
+        for (int elapsed = 0; elapsed < ms; elapsed += FRAME_MS) {
+            frame();
+        }
+    }
+
+    private void frame() {
+        ShadowLooper.idleMainLooper(FRAME_MS, TimeUnit.MILLISECONDS);
+        mContainer.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mContainer.layout(0, 0, WIDTH, HEIGHT);
+    }
+}
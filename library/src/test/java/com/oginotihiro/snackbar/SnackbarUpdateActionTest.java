@@ -0,0 +1,94 @@
+package com.oginotihiro.snackbar;
+
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.widget.Button;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link Snackbar#updateAction(String, View.OnClickListener)} binds the new listener
+ * of a shown Snackbar, also when the action text stays the same.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class SnackbarUpdateActionTest {
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    private final Object mScope = new Object();
+    private FrameLayout mContainer;
+    private int mClicks;
+
+    private final View.OnClickListener mListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            mClicks++;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        mContainer = new FrameLayout(
+                new ContextThemeWrapper(RuntimeEnvironment.application, R.style.Theme_AppCompat));
+    }
+
+    @Test
+    public void listenerSetOnSameAction_isBound() {
+        Snackbar snackbar = make(null);
+        Button action = ((DefaultSnackLayout) snackbar.getContentView()).getBtAction();
+        assertFalse(action.hasOnClickListeners());
+
+        snackbar.updateAction("Undo", mListener);
+        frame();
+        assertTrue(action.performClick());
+        assertEquals(1, mClicks);
+    }
+
+    @Test
+    public void listenerClearedOnSameAction_isUnbound() {
+        Snackbar snackbar = make(mListener);
+        Button action = ((DefaultSnackLayout) snackbar.getContentView()).getBtAction();
+        assertTrue(action.hasOnClickListeners());
+
+        snackbar.updateAction("Undo", null);
+        frame();
+        assertFalse(action.hasOnClickListeners());
+        action.performClick();
+        assertEquals(0, mClicks);
+        assertTrue(snackbar.isShown());
+    }
+
+    /**
+     * Show a Snackbar with an "Undo" action in the default layout.
+     */
+    private Snackbar make(View.OnClickListener listener) {
+        Snackbar snackbar = Snackbar.makeIn(mContainer, "message", Snackbar.BOTTOM_TOP, Snackbar.LENGTH_INDEFINITE)
+                .setScope(mScope)
+                .setFlatLayout(false)
+                .setAnimator(SnackbarAnimators.INSTANT)
+                .setAction("Undo", listener);
+        snackbar.show();
+        frame();
+        assertTrue(snackbar.isShown());
+        return snackbar;
+    }
+
+    private void frame() {
+        ShadowLooper.idleMainLooper(16, TimeUnit.MILLISECONDS);
+        mContainer.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mContainer.layout(0, 0, WIDTH, HEIGHT);
+    }
+}